@@ -0,0 +1,112 @@
+package com.avics.chant.cache;
+
+import com.avics.chant.dto.LeaderboardEntry;
+import com.avics.chant.dto.LeaderboardPageResponse;
+import com.avics.chant.util.OrderStatisticTree;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Users ordered by total (highest first, ties by user id), maintained by
+ * {@link UserTotalsIndex} as totals change. The ranking is an order-statistic
+ * tree, so seeking to the (total, userId) a page starts after, and counting
+ * the users ahead of it for ranks, are both O(log n) rather than an offset
+ * scan. Updates take a short exclusive lock, pages and ranks a shared one.
+ */
+@Component
+public class ChantLeaderboard {
+
+    private static final Comparator<Ranked> ORDER = Comparator
+            .comparingLong((Ranked r) -> r.total).reversed()
+            .thenComparing(r -> r.userId);
+
+    private final OrderStatisticTree<Ranked> ranking = new OrderStatisticTree<>(ORDER);
+
+    private final Map<String, Ranked> current = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // the total is read under the lock, so the last update for a user always wins
+    public void update(String userId, LongSupplier total) {
+        lock.writeLock().lock();
+        try {
+            long value = total.getAsLong();
+            Ranked old = current.get(userId);
+            if (old != null && old.total == value) {
+                return;
+            }
+            // old entry out first, readers never see a user twice
+            if (old != null) {
+                ranking.remove(old);
+            }
+            Ranked next = new Ranked(userId, value);
+            ranking.add(next);
+            current.put(userId, next);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public LeaderboardPageResponse page(int limit, Long afterTotal, String afterUserId) {
+        Ranked after = afterTotal != null && afterUserId != null ? new Ranked(afterUserId, afterTotal) : null;
+        lock.readLock().lock();
+        try {
+            List<Ranked> page = ranking.after(after, limit + 1);
+            List<LeaderboardEntry> entries = new ArrayList<>(Math.min(limit, page.size()));
+            long offset = 0;
+            long rank = 0;
+            for (int i = 0; i < page.size() && i < limit; i++) {
+                Ranked r = page.get(i);
+                if (i == 0) {
+                    offset = ranking.countBefore(r);
+                    rank = rankOf(r.total);
+                } else if (r.total != page.get(i - 1).total) {
+                    rank = offset + i + 1;
+                }
+                entries.add(new LeaderboardEntry(rank, r.userId, r.total));
+            }
+            if (page.size() <= limit) {
+                return new LeaderboardPageResponse(entries, null, null);
+            }
+            Ranked last = page.get(limit - 1);
+            return new LeaderboardPageResponse(entries, last.total, last.userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LeaderboardEntry rankOf(String userId) {
+        lock.readLock().lock();
+        try {
+            Ranked r = current.get(userId);
+            if (r == null) {
+                return new LeaderboardEntry(null, userId, 0L);
+            }
+            return new LeaderboardEntry(rankOf(r.total), userId, r.total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 1 + number of users with a strictly higher total ("" sorts before any user id)
+    private long rankOf(long total) {
+        return ranking.countBefore(new Ranked("", total)) + 1L;
+    }
+
+    private static final class Ranked {
+        private final String userId;
+        private final long total;
+
+        private Ranked(String userId, long total) {
+            this.userId = userId;
+            this.total = total;
+        }
+    }
+}
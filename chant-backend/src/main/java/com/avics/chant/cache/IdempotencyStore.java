@@ -0,0 +1,88 @@
+package com.avics.chant.cache;
+
+import com.avics.chant.dto.ApiResponse;
+import com.avics.chant.repository.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response of every keyed add for the dedupe window. A repeat
+ * of a key inside the window gets the original response back without
+ * touching the database; a repeat that arrives while the first call is still
+ * running waits for it instead of running again. Failed responses are not
+ * remembered, so the client can retry them.
+ */
+@Component
+public class IdempotencyStore {
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Value("${chant.idempotency.window-seconds}")
+    private long windowSeconds;
+
+    @Value("${chant.idempotency.max-entries}")
+    private long maxEntries;
+
+    @Value("${chant.idempotency.retention-hours}")
+    private long retentionHours;
+
+    private Cache<String, CompletableFuture<ApiResponse>> responses;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    @PostConstruct
+    public void init() {
+        responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(windowSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public ApiResponse execute(String scopedKey, Supplier<ApiResponse> action) {
+        CompletableFuture<ApiResponse> mine = new CompletableFuture<>();
+        CompletableFuture<ApiResponse> existing = responses.asMap().putIfAbsent(scopedKey, mine);
+        if (existing != null) {
+            log.info("Duplicate request for idempotency key {}, returning original response", scopedKey);
+            return existing.join();
+        }
+        ApiResponse response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            responses.asMap().remove(scopedKey, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        if (!response.isSuccess()) {
+            responses.asMap().remove(scopedKey, mine);
+        }
+        mine.complete(response);
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${chant.idempotency.purge-interval-ms}")
+    public void purgeExpiredKeys() {
+        try {
+            int purged = idempotencyKeyRepository.deleteOlderThan(Instant.now().minus(Duration.ofHours(retentionHours)));
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (Exception e) {
+            log.error("Error purging idempotency keys: {}", e.getMessage(), e);
+        }
+    }
+}
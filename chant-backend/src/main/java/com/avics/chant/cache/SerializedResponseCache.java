@@ -0,0 +1,141 @@
+package com.avics.chant.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response bodies of the high fan-out read endpoints, kept as the JSON bytes
+ * (and, when large enough, gzipped bytes) that are written to every client
+ * until the data changes.
+ *
+ * An entry is tagged with the {@link TotalsVersions} global version read
+ * before it was built, so any write committed through this instance makes
+ * it stale. Only one request rebuilds a stale entry, concurrent requests for
+ * the same key wait for that rebuild. Entries also expire after ttl-ms,
+ * which bounds how long writes made through other instances go unseen.
+ */
+@Component
+public class SerializedResponseCache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TotalsVersions totalsVersions;
+
+    @Value("${chant.response-cache.ttl-ms}")
+    private long ttlMs;
+
+    @Value("${chant.response-cache.gzip-min-bytes}")
+    private int gzipMinBytes;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> rebuilds = new ConcurrentHashMap<>();
+
+    // null when there is no entry for key or it is stale
+    public Entry getIfFresh(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version != totalsVersions.getGlobalVersion()
+                || System.currentTimeMillis() - entry.builtAtMillis >= ttlMs) {
+            return null;
+        }
+        return entry;
+    }
+
+    public Entry get(String key, Supplier<?> loader) {
+        Entry entry = getIfFresh(key);
+        if (entry != null) {
+            return entry;
+        }
+        CompletableFuture<Entry> rebuild = new CompletableFuture<>();
+        CompletableFuture<Entry> running = rebuilds.putIfAbsent(key, rebuild);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // a rebuild may have finished between the first check and claiming this one
+            entry = getIfFresh(key);
+            if (entry == null) {
+                // read before loading, so a write landing during the load leaves the entry stale
+                long version = totalsVersions.getGlobalVersion();
+                entry = build(version, loader.get());
+                entries.put(key, entry);
+            }
+            rebuild.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            rebuild.completeExceptionally(e);
+            throw e;
+        } finally {
+            rebuilds.remove(key, rebuild);
+        }
+    }
+
+    private Entry await(CompletableFuture<Entry> rebuild) {
+        try {
+            return rebuild.join();
+        } catch (CompletionException e) {
+            // the rebuilding request failed, fail its waiters the same way
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Entry build(long version, Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            byte[] gzip = null;
+            if (gzipMinBytes >= 0 && json.length >= gzipMinBytes) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+                try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                    gz.write(json);
+                }
+                gzip = out.toByteArray();
+            }
+            return new Entry(version, System.currentTimeMillis(), json, gzip);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class Entry {
+
+        private final long version;
+
+        private final long builtAtMillis;
+
+        private final byte[] json;
+
+        private final byte[] gzip;
+
+        Entry(long version, long builtAtMillis, byte[] json, byte[] gzip) {
+            this.version = version;
+            this.builtAtMillis = builtAtMillis;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        // null when the body is below gzip-min-bytes
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.avics.chant.cache;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.ingest.ChantsWrittenEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters behind the ETags of the totals endpoints, bumped after
+ * every committed write so a matching If-None-Match can be answered without
+ * reading any total.
+ *
+ * Tags carry a per-boot nonce, so counters restarting at 0 or a different
+ * instance never produce a false match. Writes made through other instances
+ * do not bump these counters, so tags also roll over every refresh interval
+ * to bound how long such a change can be hidden behind a 304.
+ */
+@Component
+public class TotalsVersions {
+
+    @Value("${chant.totals.etag-refresh-seconds}")
+    private long refreshSeconds;
+
+    private final String nonce = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    private final ConcurrentHashMap<String, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+    // after UserTotalsIndex, so a tag read before a total never pairs a new version with an old total
+    @TransactionalEventListener
+    public void onChantsWritten(ChantsWrittenEvent event) {
+        Set<String> users = new HashSet<>();
+        for (Chant chant : event.getChants()) {
+            users.add(chant.getUserIdentifier());
+        }
+        for (String userId : users) {
+            userVersions.computeIfAbsent(userId, k -> new AtomicLong()).incrementAndGet();
+        }
+        globalVersion.incrementAndGet();
+    }
+
+    public long getGlobalVersion() {
+        return globalVersion.get();
+    }
+
+    public String globalEtag() {
+        return etag("g", globalVersion.get());
+    }
+
+    public String userEtag(String userId) {
+        AtomicLong version = userVersions.get(userId);
+        return etag("u", version != null ? version.get() : 0L);
+    }
+
+    private String etag(String scope, long version) {
+        long epoch = System.currentTimeMillis() / 1000 / refreshSeconds;
+        // weak: the identity and the gzip body of a version share the tag, which a strong tag must not
+        return "W/\"" + scope + "-" + nonce + "-" + epoch + "-" + version + "\"";
+    }
+}
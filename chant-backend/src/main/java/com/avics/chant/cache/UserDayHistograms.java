@@ -0,0 +1,71 @@
+package com.avics.chant.cache;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.ingest.ChantsWrittenEvent;
+import com.avics.chant.repository.ChantExportRepository;
+import com.avics.chant.util.DayHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user day histograms behind the statistics endpoint. Warmed once from
+ * the daily rollup at startup and then updated as writes commit, like
+ * {@link UserTotalsIndex}.
+ */
+@Component
+@DependsOn("chantRollupBackfill")
+public class UserDayHistograms {
+
+    @Autowired
+    private ChantExportRepository chantExportRepository;
+
+    private final ConcurrentHashMap<String, DayHistogram> histograms = new ConcurrentHashMap<>();
+
+    // stays false if warm-up failed, callers then fall back to the database
+    private volatile boolean warm;
+
+    private static final Logger log = LoggerFactory.getLogger(UserDayHistograms.class);
+
+    @PostConstruct
+    public void warmUp() {
+        try {
+            long[] rows = {0};
+            chantExportRepository.streamUserDailyTotals(rs -> {
+                add(rs.getString(1), rs.getDate(2).toLocalDate(), rs.getLong(3));
+                rows[0]++;
+            });
+            warm = true;
+            log.info("User day histograms warmed with {} days for {} users", rows[0], histograms.size());
+        } catch (Exception e) {
+            log.error("Error warming user day histograms: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    @TransactionalEventListener
+    public void onChantsWritten(ChantsWrittenEvent event) {
+        for (Chant chant : event.getChants()) {
+            add(chant.getUserIdentifier(), chant.getChantDate(), chant.getChantCount());
+        }
+    }
+
+    private void add(String userId, LocalDate date, long count) {
+        histograms.computeIfAbsent(userId, k -> new DayHistogram()).add(date, count);
+    }
+
+    // null when the user has no chants
+    public DayHistogram get(String userId) {
+        return histograms.get(userId);
+    }
+}
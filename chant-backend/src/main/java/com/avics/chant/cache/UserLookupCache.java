@@ -0,0 +1,146 @@
+package com.avics.chant.cache;
+
+import com.avics.chant.entity.User;
+import com.avics.chant.repository.UserIdentifierRepository;
+import com.avics.chant.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Normalized identifier to user lookups. Hits are cached; misses only when
+ * chant.user-cache.negative-ttl-seconds is above zero, since a user created
+ * on another instance is then reported as missing here until the miss
+ * expires. With chant.user-cache.bloom.enabled, a Bloom
+ * filter of every known identifier also answers most "does not exist"
+ * questions without touching the cache or the database.
+ *
+ * Users created through this instance are added to the filter straight away.
+ * Users created by other instances are only picked up when the filter is
+ * rebuilt, so a negative answer may be stale for up to the rebuild interval;
+ * the filter is off by default and only suits a single writing instance.
+ */
+@Component
+public class UserLookupCache {
+
+    @Autowired
+    private UserIdentifierRepository userIdentifierRepository;
+
+    @Value("${chant.user-cache.max-size}")
+    private long maxSize;
+
+    @Value("${chant.user-cache.ttl-seconds}")
+    private long ttlSeconds;
+
+    @Value("${chant.user-cache.negative-ttl-seconds}")
+    private long negativeTtlSeconds;
+
+    @Value("${chant.user-cache.bloom.enabled}")
+    private boolean bloomEnabled;
+
+    @Value("${chant.user-cache.bloom.expected-users}")
+    private long bloomExpectedUsers;
+
+    @Value("${chant.user-cache.bloom.false-positive-rate}")
+    private double bloomFalsePositiveRate;
+
+    private Cache<String, Optional<User>> users;
+
+    // null while disabled or until the first build succeeds, lookups then go to the cache/database
+    private volatile BloomFilter bloom;
+
+    // filter being rebuilt, receives new identifiers too so none are lost in the swap
+    private volatile BloomFilter rebuilding;
+
+    private static final Logger log = LoggerFactory.getLogger(UserLookupCache.class);
+
+    @PostConstruct
+    public void init() {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<User>>() {
+                    @Override
+                    public long expireAfterCreate(String key, Optional<User> value, long currentTime) {
+                        return value.isPresent() ? ttlNanos : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Optional<User> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Optional<User> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        rebuildBloomFilter();
+    }
+
+    @Scheduled(fixedDelayString = "${chant.user-cache.bloom.rebuild-interval-ms}",
+            initialDelayString = "${chant.user-cache.bloom.rebuild-interval-ms}")
+    public void rebuildBloomFilter() {
+        if (!bloomEnabled) {
+            return;
+        }
+        try {
+            BloomFilter next = new BloomFilter(bloomExpectedUsers, bloomFalsePositiveRate);
+            rebuilding = next;
+            long[] count = {0};
+            userIdentifierRepository.forEachIdentifier(id -> {
+                next.put(id);
+                count[0]++;
+            });
+            bloom = next;
+            log.info("User bloom filter built with {} identifiers", count[0]);
+        } catch (Exception e) {
+            log.error("Error building user bloom filter: {}", e.getMessage(), e);
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    public Optional<User> get(String identifier, Function<String, Optional<User>> loader) {
+        BloomFilter filter = bloom;
+        if (filter != null && !filter.mightContain(identifier)) {
+            return Optional.empty();
+        }
+        if (negativeTtlSeconds > 0) {
+            return users.get(identifier, loader);
+        }
+        Optional<User> cached = users.getIfPresent(identifier);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<User> user = loader.apply(identifier);
+        user.ifPresent(u -> users.put(identifier, user));
+        return user;
+    }
+
+    public void put(String identifier, User user) {
+        // read the rebuild target before the live filter so a concurrent swap cannot skip both
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(identifier);
+        }
+        BloomFilter filter = bloom;
+        if (filter != null) {
+            filter.put(identifier);
+        }
+        users.put(identifier, Optional.of(user));
+    }
+}
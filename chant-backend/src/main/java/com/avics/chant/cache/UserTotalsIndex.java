@@ -0,0 +1,237 @@
+package com.avics.chant.cache;
+
+import com.avics.chant.dto.UserChantResponse;
+import com.avics.chant.entity.Chant;
+import com.avics.chant.ingest.ChantWriteGate;
+import com.avics.chant.ingest.ChantsWrittenEvent;
+import com.avics.chant.repository.ChantDailyTotalRepository;
+import com.avics.chant.repository.ChantExportRepository;
+import com.avics.chant.repository.ChantRepository;
+import com.avics.chant.util.TotalsSnapshotFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running chant total per normalized user identifier, updated as writes
+ * commit, so reading a user's total no longer depends on how many rows they
+ * have logged.
+ *
+ * The index is saved to a snapshot file on a schedule and at shutdown,
+ * together with the last chant id it covers. A restart loads the snapshot
+ * and only sums the chants rows added after that id; without a usable
+ * snapshot it is warmed from the daily rollup instead. Only writes made
+ * through this instance move the snapshot forward, so it should stay off
+ * when several instances write to the same database.
+ */
+@Component
+@DependsOn("chantRollupBackfill")
+public class UserTotalsIndex {
+
+    @Autowired
+    private ChantDailyTotalRepository dailyTotalRepository;
+
+    @Autowired
+    private ChantRepository chantRepository;
+
+    @Autowired
+    private ChantExportRepository chantExportRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChantWriteGate writeGate;
+
+    @Autowired
+    private ChantLeaderboard leaderboard;
+
+    @Value("${chant.snapshot.enabled}")
+    private boolean snapshotEnabled;
+
+    @Value("${chant.snapshot.path}")
+    private String snapshotPath;
+
+    @Value("${chant.snapshot.lock-timeout-ms}")
+    private long snapshotLockTimeoutMs;
+
+    private final ConcurrentHashMap<String, LongAdder> totals = new ConcurrentHashMap<>();
+
+    // stays false if warm-up failed, callers then fall back to the database
+    private volatile boolean warm;
+
+    // last chant id covered by the snapshot on disk, 0 while there is none
+    private volatile long snapshotHighWaterMark;
+
+    private static final String MAX_CHANT_ID_SQL = "SELECT MAX(id) FROM chants";
+
+    private static final Logger log = LoggerFactory.getLogger(UserTotalsIndex.class);
+
+    @PostConstruct
+    public void warmUp() {
+        try {
+            if (!snapshotEnabled || !restoreSnapshot()) {
+                for (UserChantResponse row : dailyTotalRepository.getUserChantCounts()) {
+                    add(row.getUserId(), row.getTotalChants());
+                }
+                log.info("User totals index warmed from the rollup with {} users", totals.size());
+            }
+            warm = true;
+        } catch (Exception e) {
+            log.error("Error warming user totals index: {}", e.getMessage(), e);
+        }
+    }
+
+    // false when there is no usable snapshot and the index is still empty
+    private boolean restoreSnapshot() {
+        TotalsSnapshotFile snapshot;
+        try {
+            snapshot = TotalsSnapshotFile.read(snapshotFile());
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable totals snapshot {}: {}", snapshotFile(), e.getMessage());
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        long sum = 0;
+        for (long total : snapshot.getTotals().values()) {
+            sum += total;
+        }
+        Long maxId = chantRepository.getMaxId();
+        long upToId = maxId != null ? maxId : 0L;
+        if (sum != snapshot.getGlobalTotal() || snapshot.getHighWaterMark() > upToId) {
+            // totals do not add up, or chants were removed since (database restored from a backup)
+            log.warn("Ignoring totals snapshot {} that does not match the database", snapshotFile());
+            return false;
+        }
+        for (Map.Entry<String, Long> entry : snapshot.getTotals().entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+        snapshotHighWaterMark = snapshot.getHighWaterMark();
+        long[] replayed = {0};
+        chantExportRepository.streamUserTotalsBetweenIds(snapshot.getHighWaterMark(), upToId, rs -> {
+            add(rs.getString(1), rs.getLong(2));
+            replayed[0]++;
+        });
+        log.info("User totals index restored from snapshot with {} users (chant id {}), replayed chants up to id {} for {} users",
+                snapshot.getTotals().size(), snapshot.getHighWaterMark(), upToId, replayed[0]);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${chant.snapshot.interval-ms}",
+            initialDelayString = "${chant.snapshot.interval-ms}")
+    public void saveSnapshot() {
+        if (!snapshotEnabled || !warm) {
+            return;
+        }
+        try {
+            TotalsSnapshotFile snapshot = copyWhileClosed();
+            if (snapshot == null) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    log.warn("Skipped totals snapshot, writes did not pause within {} ms", snapshotLockTimeoutMs);
+                }
+                return;
+            }
+            snapshot.write(snapshotFile());
+            snapshotHighWaterMark = snapshot.getHighWaterMark();
+            log.debug("Saved totals snapshot with {} users up to chant id {}",
+                    snapshot.getTotals().size(), snapshot.getHighWaterMark());
+        } catch (Exception e) {
+            log.error("Error saving totals snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    // the statement, and with it a pooled connection, is taken before writes are paused: the paused
+    // writers hold connections of their own, so waiting on the pool inside the gate could starve it
+    private TotalsSnapshotFile copyWhileClosed() {
+        return jdbcTemplate.execute(MAX_CHANT_ID_SQL, (PreparedStatement statement) -> {
+            try {
+                // no write in flight: every chant up to the max id has been applied and none below it is pending
+                return writeGate.whileClosed(snapshotLockTimeoutMs, () -> {
+                    long maxId = queryMaxId(statement);
+                    Map<String, Long> copy = new HashMap<>(Math.max(16, (int) (totals.size() / 0.75f) + 1));
+                    long sum = 0;
+                    for (Map.Entry<String, LongAdder> entry : totals.entrySet()) {
+                        long total = entry.getValue().sum();
+                        copy.put(entry.getKey(), total);
+                        sum += total;
+                    }
+                    return new TotalsSnapshotFile(maxId, sum, copy);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        });
+    }
+
+    private long queryMaxId(PreparedStatement statement) {
+        try (ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("max chant id", MAX_CHANT_ID_SQL, e);
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshotOnShutdown() {
+        saveSnapshot();
+    }
+
+    private Path snapshotFile() {
+        return Paths.get(snapshotPath);
+    }
+
+    /**
+     * Chants above this id may be replayed into the index after a restart,
+     * so they must stay in the chants table. No limit with snapshots off.
+     */
+    public long getSnapshotHighWaterMark() {
+        return snapshotEnabled ? snapshotHighWaterMark : Long.MAX_VALUE;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    // first, so other listeners reading totals for these chants see them applied
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onChantsWritten(ChantsWrittenEvent event) {
+        for (Chant chant : event.getChants()) {
+            add(chant.getUserIdentifier(), chant.getChantCount());
+        }
+    }
+
+    private void add(String userId, long count) {
+        LongAdder total = totals.computeIfAbsent(userId, k -> new LongAdder());
+        total.add(count);
+        leaderboard.update(userId, total::sum);
+    }
+
+    public long getTotal(String userId) {
+        LongAdder total = totals.get(userId);
+        return total != null ? total.sum() : 0L;
+    }
+}
@@ -0,0 +1,144 @@
+package com.avics.chant.concurrent;
+
+import com.avics.chant.dto.ApiResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs controller work on a fixed pool with a bounded queue, so the Tomcat
+ * thread is released while the database is busy and one kind of work cannot
+ * take every request thread.
+ *
+ * Load is shed instead of queued without limit: a full queue throws
+ * RejectedExecutionException straight away (503 in GlobalExceptionHandler),
+ * and a request still queued after the timeout is answered 503 and its work
+ * is never run. What happens to work already running at the timeout depends
+ * on abandonRunning: reads are answered 503 and left to finish unseen, while
+ * writes are always waited for, since a write that commits after a 503
+ * would be counted twice when the client retries.
+ */
+public class BoundedDbExecutor {
+
+    private static final int QUEUED = 0;
+
+    private static final int RUNNING = 1;
+
+    private static final int SHED = 2;
+
+    private final String name;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMs;
+
+    private final boolean abandonRunning;
+
+    private final String busyMsg;
+
+    private final Counter rejected;
+
+    // sheds queued writes; reads use the DeferredResult timeout instead
+    private final ScheduledExecutorService shedTimer;
+
+    public BoundedDbExecutor(String name, int threads, int queueCapacity, long timeoutMs, boolean abandonRunning,
+                             String busyMsg, MeterRegistry registry) {
+        this.name = name;
+        this.timeoutMs = timeoutMs;
+        this.abandonRunning = abandonRunning;
+        this.busyMsg = busyMsg;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, name + "-" + threadNo.incrementAndGet()));
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(registry);
+        this.rejected = Counter.builder("chant.executor.rejected")
+                .description("Requests shed because the executor queue was full")
+                .tag("name", name).register(registry);
+        this.shedTimer = abandonRunning ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-shed");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public <T> DeferredResult<ResponseEntity<T>> submit(Supplier<ResponseEntity<T>> work) {
+        return abandonRunning ? submitAbandoning(work) : submitWaiting(work);
+    }
+
+    private <T> DeferredResult<ResponseEntity<T>> submitAbandoning(Supplier<ResponseEntity<T>> work) {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(timeoutMs, this::busy);
+        execute(() -> {
+            if (result.isSetOrExpired()) {
+                // timed out while queued, the client already has its 503
+                return;
+            }
+            run(work, result);
+        });
+        return result;
+    }
+
+    // no request timeout at all: once started the work runs to completion and its outcome is sent
+    private <T> DeferredResult<ResponseEntity<T>> submitWaiting(Supplier<ResponseEntity<T>> work) {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(0L);
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        Runnable task = () -> {
+            if (state.compareAndSet(QUEUED, RUNNING)) {
+                run(work, result);
+            }
+        };
+        execute(task);
+        shedTimer.schedule(() -> {
+            if (state.compareAndSet(QUEUED, SHED)) {
+                executor.remove(task);
+                result.setResult(busy());
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private <T> void run(Supplier<ResponseEntity<T>> work, DeferredResult<ResponseEntity<T>> result) {
+        try {
+            result.setResult(work.get());
+        } catch (Exception e) {
+            // handled by GlobalExceptionHandler like a synchronous failure
+            result.setErrorResult(e);
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RejectedExecutionException(name + " queue is full", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> busy() {
+        return (ResponseEntity<T>) ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ApiResponse(false, busyMsg, null));
+    }
+
+    public void shutdown() throws InterruptedException {
+        if (shedTimer != null) {
+            shedTimer.shutdown();
+        }
+        executor.shutdown();
+        executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,16 @@
+package com.avics.chant.concurrent;
+
+// answered with 429 by GlobalExceptionHandler
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String limit, long retryAfterSeconds) {
+        super("Rate limit " + limit + " exceeded");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
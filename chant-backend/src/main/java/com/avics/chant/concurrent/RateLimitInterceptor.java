@@ -0,0 +1,47 @@
+package com.avics.chant.concurrent;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-IP limits on the write endpoints, checked before the request body is
+ * even read. The client IP is the remote address; behind a proxy set
+ * server.forward-headers-strategy so it is the original client's.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final Map<String, String> LIMIT_BY_PATH = new HashMap<>();
+
+    static {
+        LIMIT_BY_PATH.put("/api/chants/add", RateLimiter.ADD_IP);
+        LIMIT_BY_PATH.put("/api/chants/addBatch", RateLimiter.ADD_BATCH_IP);
+        LIMIT_BY_PATH.put("/api/users/create", RateLimiter.CREATE_USER_IP);
+    }
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    public static String[] paths() {
+        return LIMIT_BY_PATH.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String limit = LIMIT_BY_PATH.get(request.getServletPath());
+        if (limit == null || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        long retryAfter = rateLimiter.acquire(limit, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            throw new RateLimitExceededException(limit, retryAfter);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package com.avics.chant.concurrent;
+
+import com.avics.chant.metrics.ChantMetrics;
+import com.avics.chant.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets per client IP or normalized user id, one set per limit
+ * (chant.rate-limit.&lt;limit&gt;.per-second / .burst). Buckets idle for
+ * longer than chant.rate-limit.idle-seconds are evicted; a new bucket starts
+ * full, so the idle time should be at least burst / per-second.
+ */
+@Component
+public class RateLimiter {
+
+    public static final String ADD_IP = "add.ip";
+
+    public static final String ADD_USER = "add.user";
+
+    public static final String ADD_BATCH_IP = "add-batch.ip";
+
+    public static final String CREATE_USER_IP = "create-user.ip";
+
+    private static final String[] LIMITS = {ADD_IP, ADD_USER, ADD_BATCH_IP, CREATE_USER_IP};
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ChantMetrics chantMetrics;
+
+    @Value("${chant.rate-limit.idle-seconds}")
+    private long idleSeconds;
+
+    @Value("${chant.rate-limit.max-buckets}")
+    private long maxBuckets;
+
+    private final Map<String, double[]> limits = new HashMap<>();
+
+    private Cache<String, TokenBucket> buckets;
+
+    @PostConstruct
+    public void init() {
+        for (String limit : LIMITS) {
+            double perSecond = environment.getProperty("chant.rate-limit." + limit + ".per-second", Double.class, 0d);
+            int burst = environment.getProperty("chant.rate-limit." + limit + ".burst", Integer.class, 1);
+            if (perSecond > 0) {
+                limits.put(limit, new double[]{perSecond, Math.max(1, burst)});
+            }
+        }
+        buckets = Caffeine.newBuilder()
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxBuckets)
+                .build();
+    }
+
+    /**
+     * Returns 0 when admitted, otherwise the seconds to wait before retrying.
+     * Limits without a configured rate always admit.
+     */
+    public long acquire(String limit, String key) {
+        double[] rate = limits.get(limit);
+        if (rate == null || key == null) {
+            return 0;
+        }
+        TokenBucket bucket = buckets.get(limit + ':' + key, k -> new TokenBucket(rate[0], (int) rate[1]));
+        if (bucket.tryAcquire()) {
+            return 0;
+        }
+        chantMetrics.rateLimited(limit);
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(bucket.nanosUntilAvailable() + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
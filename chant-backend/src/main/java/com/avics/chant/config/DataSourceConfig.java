@@ -0,0 +1,79 @@
+package com.avics.chant.config;
+
+import com.avics.chant.datasource.ReplicaLagMonitor;
+import com.avics.chant.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Primary and read replica pools behind one routing DataSource, used when
+ * chant.datasource.replica.enabled=true. Otherwise Spring Boot's single
+ * DataSource from spring.datasource.* is used as before.
+ *
+ * The primary is configured by spring.datasource.* and sized by
+ * spring.datasource.hikari.*, the replica by chant.datasource.replica.* and
+ * chant.datasource.replica.hikari.*.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chant.datasource.replica.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("chant.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${chant.datasource.replica.url}") String url,
+                                              @Value("${chant.datasource.replica.username}") String username,
+                                              @Value("${chant.datasource.replica.password}") String password,
+                                              @Value("${chant.datasource.replica.driver-class-name}") String driverClassName) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(username).password(password).driverClassName(driverClassName)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${chant.datasource.replica.max-lag-ms}") long maxLagMs,
+                                               @Value("${chant.datasource.replica.lag-check-interval-ms}") long checkIntervalMs) {
+        return new ReplicaLagMonitor(primary, replica, maxLagMs, checkIntervalMs);
+    }
+
+    // what JPA, JdbcTemplate and Flyway get; only read-only transactions are routed to the replica
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(lagMonitor);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primary);
+        targets.put(ReplicaRoutingDataSource.REPLICA, replica);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,32 @@
+package com.avics.chant.config;
+
+import com.avics.chant.concurrent.BoundedDbExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${chant.msg.chant.busy}")
+    private String busyMsg;
+
+    // chant and user writes; never timed out once started, see BoundedDbExecutor
+    @Bean(destroyMethod = "shutdown")
+    public BoundedDbExecutor chantWriteExecutor(MeterRegistry registry,
+                                                @Value("${chant.executor.write.threads}") int threads,
+                                                @Value("${chant.executor.write.queue-capacity}") int queueCapacity,
+                                                @Value("${chant.executor.write.timeout-ms}") long timeoutMs) {
+        return new BoundedDbExecutor("chant-write", threads, queueCapacity, timeoutMs, false, busyMsg, registry);
+    }
+
+    // reads that can run long on the database; cheap in-memory reads stay on the request thread
+    @Bean(destroyMethod = "shutdown")
+    public BoundedDbExecutor chantReadExecutor(MeterRegistry registry,
+                                               @Value("${chant.executor.read.threads}") int threads,
+                                               @Value("${chant.executor.read.queue-capacity}") int queueCapacity,
+                                               @Value("${chant.executor.read.timeout-ms}") long timeoutMs) {
+        return new BoundedDbExecutor("chant-read", threads, queueCapacity, timeoutMs, true, busyMsg, registry);
+    }
+}
@@ -0,0 +1,80 @@
+package com.avics.chant.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@Configuration
+public class MetricsConfig {
+
+    // makes @Timed work on the service methods, not only on controllers
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    // static so it is registered before the DataSource it wraps is created
+    @Bean
+    public static SlowQueryLogPostProcessor slowQueryLogPostProcessor() {
+        return new SlowQueryLogPostProcessor();
+    }
+
+    /**
+     * Logs every statement, JPA or JdbcTemplate, that takes at least
+     * chant.db.slow-query-threshold-ms, so per-statement SQL logging can
+     * stay off. A threshold of 0 leaves the DataSource unwrapped. Only pools
+     * are wrapped, not the routing DataSource in front of them, so each
+     * statement is logged once and under the pool it ran on.
+     */
+    static class SlowQueryLogPostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+        private static final Logger log = LoggerFactory.getLogger("com.avics.chant.SlowQuery");
+
+        private long thresholdMs;
+
+        @Override
+        public void setEnvironment(Environment environment) {
+            thresholdMs = environment.getProperty("chant.db.slow-query-threshold-ms", Long.class, 0L);
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource) || bean instanceof DelegatingDataSource
+                    || bean instanceof AbstractRoutingDataSource || thresholdMs <= 0) {
+                return bean;
+            }
+            DefaultQueryLogEntryCreator entryCreator = new DefaultQueryLogEntryCreator();
+            return ProxyDataSourceBuilder.create((DataSource) bean)
+                    .name(beanName)
+                    .listener(new QueryExecutionListener() {
+                        @Override
+                        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                        }
+
+                        @Override
+                        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                            if (execInfo.getElapsedTime() >= thresholdMs) {
+                                log.warn("Slow query: {}", entryCreator.getLogEntry(execInfo, queryInfoList, true, false, false));
+                            }
+                        }
+                    })
+                    .build();
+        }
+    }
+}
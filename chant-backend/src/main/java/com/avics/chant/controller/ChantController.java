@@ -1,15 +1,34 @@
 package com.avics.chant.controller;
 
+import com.avics.chant.cache.SerializedResponseCache;
+import com.avics.chant.cache.TotalsVersions;
+import com.avics.chant.concurrent.BoundedDbExecutor;
+import com.avics.chant.concurrent.RateLimitExceededException;
+import com.avics.chant.concurrent.RateLimiter;
 import com.avics.chant.dto.*;
+import com.avics.chant.live.ChantTotalsBroadcaster;
 import com.avics.chant.service.ChantService;
+import com.avics.chant.util.ValidationUtil;
 
-import java.util.List;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/chants")
@@ -18,23 +37,154 @@ public class ChantController {
     @Autowired
     private ChantService chantService;
 
+    @Autowired
+    private ChantTotalsBroadcaster broadcaster;
+
+    @Autowired
+    private ValidationUtil validationUtil;
+
+    @Autowired
+    private TotalsVersions totalsVersions;
+
+    @Autowired
+    private SerializedResponseCache responseCache;
+
+    @Autowired
+    @Qualifier("chantWriteExecutor")
+    private BoundedDbExecutor writeExecutor;
+
+    @Autowired
+    @Qualifier("chantReadExecutor")
+    private BoundedDbExecutor readExecutor;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Value("${chant.totals.cache-max-age-seconds}")
+    private long totalsMaxAgeSeconds;
+
     @PostMapping("/add")
-    public ResponseEntity<ApiResponse> addChant(@Valid @RequestBody AddChantRequest request){
-        return ResponseEntity.ok(chantService.addChant(request));
+    public DeferredResult<ResponseEntity<ApiResponse>> addChant(@Valid @RequestBody AddChantRequest request){
+        // per user on top of the per-IP limit, before any lookup or queueing
+        long retryAfter = rateLimiter.acquire(RateLimiter.ADD_USER, validationUtil.normalizeUserId(request.getUserid()));
+        if (retryAfter > 0) {
+            throw new RateLimitExceededException(RateLimiter.ADD_USER, retryAfter);
+        }
+        return writeExecutor.submit(() -> ResponseEntity.ok(chantService.addChant(request)));
+    }
+
+    // offline-synced clients submit many entries, possibly for several users, in one call
+    @PostMapping("/addBatch")
+    public DeferredResult<ResponseEntity<ApiResponse>> addChants(@RequestBody AddChantBatchRequest request){
+        return writeExecutor.submit(() -> ResponseEntity.ok(chantService.addChants(request)));
     }
 
+    // the tag is read before the total, so it can only be older than the body it goes with
     @GetMapping("/user/{userId}/total")
-    public ResponseEntity<UserTotalResponse> getUserTotal(@PathVariable String userId){
-        return ResponseEntity.ok(chantService.getUserTotal(userId));
+    public ResponseEntity<UserTotalResponse> getUserTotal(@PathVariable String userId, WebRequest webRequest){
+        String etag = totalsVersions.userEtag(validationUtil.normalizeUserId(userId));
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(totalsCacheControl())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING).body(chantService.getUserTotal(userId));
+    }
+
+    // daily, weekly and monthly series for from..to (default: the last year) plus streaks
+    @GetMapping("/user/{userId}/stats")
+    public DeferredResult<ResponseEntity<UserStatsResponse>> getUserStats(
+            @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return readExecutor.submit(() -> ResponseEntity.ok(chantService.getUserStats(userId, from, to)));
     }
 
     @GetMapping("/total")
-    public ResponseEntity<TotalChantsResponse> getTotalChants(){
-        return ResponseEntity.ok(chantService.getTotalChants());
+    public ResponseEntity<byte[]> getTotalChants(WebRequest webRequest){
+        String etag = totalsVersions.globalEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        SerializedResponseCache.Entry body = responseCache.get("total", chantService::getTotalChants);
+        return cachedJson(ResponseEntity.ok().eTag(etag).cacheControl(totalsCacheControl()), body, acceptsGzip(webRequest));
+    }
+
+    // checkNotModified has already set the status and the ETag header
+    private <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(totalsCacheControl())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+    }
+
+    private CacheControl totalsCacheControl() {
+        return CacheControl.maxAge(totalsMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
     
+    // a fresh cached body is written from the request thread, only rebuilds go to the read pool
     @GetMapping("/usersCounts")
-    public ResponseEntity<List<UserChantResponse>> getAllUserChantCounts() {
-        return ResponseEntity.ok(chantService.getAllUserChantCounts());
+    public DeferredResult<ResponseEntity<byte[]>> getAllUserChantCounts(WebRequest webRequest) {
+        boolean gzip = acceptsGzip(webRequest);
+        SerializedResponseCache.Entry cached = responseCache.getIfFresh("usersCounts");
+        if (cached != null) {
+            DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>();
+            result.setResult(cachedJson(ResponseEntity.ok(), cached, gzip));
+            return result;
+        }
+        return readExecutor.submit(() -> cachedJson(ResponseEntity.ok(),
+                responseCache.get("usersCounts", chantService::getAllUserChantCounts), gzip));
+    }
+
+    private ResponseEntity<byte[]> cachedJson(ResponseEntity.BodyBuilder response, SerializedResponseCache.Entry body,
+                                              boolean gzip) {
+        response.contentType(MediaType.APPLICATION_JSON).varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip && body.getGzip() != null) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getGzip());
+        }
+        return response.body(body.getJson());
+    }
+
+    private boolean acceptsGzip(WebRequest webRequest) {
+        String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    // streams rows straight from the database, heap use does not grow with the user count
+    @GetMapping("/usersCounts/export")
+    public ResponseEntity<StreamingResponseBody> exportUserChantCounts(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> chantService.exportUserChantCounts(csv ? "csv" : "ndjson", from, to, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : new MediaType("application", "x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users-counts." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
+    // live "total" events, plus "user" events when userId is given, instead of polling the totals
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTotals(@RequestParam(required = false) String userId) {
+        SseEmitter emitter = broadcaster.subscribe(
+                userId != null && !userId.isEmpty() ? validationUtil.normalizeUserId(userId) : null);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping("/leaderboard")
+    public ResponseEntity<LeaderboardPageResponse> getLeaderboard(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Long afterTotal,
+            @RequestParam(required = false) String afterUserId) {
+        return ResponseEntity.ok(chantService.getLeaderboard(limit, afterTotal, afterUserId));
+    }
+
+    @GetMapping("/leaderboard/user/{userId}")
+    public ResponseEntity<LeaderboardEntry> getUserRank(@PathVariable String userId) {
+        return ResponseEntity.ok(chantService.getUserRank(userId));
     }
 }
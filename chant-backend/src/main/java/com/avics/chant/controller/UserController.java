@@ -1,11 +1,14 @@
 package com.avics.chant.controller;
 
+import com.avics.chant.concurrent.BoundedDbExecutor;
 import com.avics.chant.dto.ApiResponse;
 import com.avics.chant.dto.CreateUserRequest;
 import com.avics.chant.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping("/api/users")
@@ -14,9 +17,13 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    @Qualifier("chantWriteExecutor")
+    private BoundedDbExecutor writeExecutor;
+
     @PostMapping("/create")
-    public ResponseEntity<ApiResponse> createUser(@RequestBody CreateUserRequest request){
-        return ResponseEntity.ok(userService.createUser(request));
+    public DeferredResult<ResponseEntity<ApiResponse>> createUser(@RequestBody CreateUserRequest request){
+        return writeExecutor.submit(() -> ResponseEntity.ok(userService.createUser(request)));
     }
 
     @GetMapping("/exists/{userId}")
@@ -0,0 +1,100 @@
+package com.avics.chant.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Measures how far the read replica is behind by writing the current time
+ * to chant_replication_heartbeat on the primary and reading it back from the
+ * replica. Reads only go to the replica while the measured lag is within
+ * max-lag-ms; until the first check, or when the replica cannot be reached,
+ * they stay on the primary.
+ *
+ * The beat just written has usually not replicated by the time it is read,
+ * so the lag is measured in steps of the check interval: keep max-lag-ms
+ * comfortably above it. A verdict is only trusted for two check intervals;
+ * if the checks stop running, e.g. behind a busy scheduler thread, reads go
+ * back to the primary.
+ */
+public class ReplicaLagMonitor implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate primary;
+
+    private final JdbcTemplate replica;
+
+    private final long maxLagMs;
+
+    private final long checkIntervalMs;
+
+    // -1 until measured, or while the replica cannot be read
+    private volatile long lagMs = -1;
+
+    private volatile boolean replicaUsable;
+
+    // when replicaUsable was last decided by a completed check
+    private volatile long checkedAtMillis;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMs, long checkIntervalMs) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    // bound by Spring Boot; taking the registry in the constructor would make the DataSource depend on it
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chant.db.replica.lag", this, m -> m.lagMs)
+                .description("Replication lag of the read replica in ms, -1 when unknown")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${chant.datasource.replica.lag-check-interval-ms}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        try {
+            primary.update("UPDATE chant_replication_heartbeat SET beat_millis = ? WHERE id = 1", now);
+        } catch (Exception e) {
+            // without a fresh beat the replica cannot be judged, the last verdict stands until it goes stale
+            log.warn("Could not write replication heartbeat: {}", e.getMessage());
+            return;
+        }
+        long lag;
+        try {
+            Long beat = replica.queryForObject("SELECT beat_millis FROM chant_replication_heartbeat WHERE id = 1", Long.class);
+            lag = Math.max(0L, now - (beat != null ? beat : 0L));
+        } catch (Exception e) {
+            log.warn("Could not read replication heartbeat from the replica: {}", e.getMessage());
+            lag = -1;
+        }
+        lagMs = lag;
+        boolean usable = lag >= 0 && lag <= maxLagMs;
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Read replica caught up (lag {} ms), read-only transactions use it again", lag);
+            } else {
+                log.warn("Read replica lag {} ms over {} ms or unknown, read-only transactions use the primary", lag, maxLagMs);
+            }
+        }
+        replicaUsable = usable;
+        checkedAtMillis = System.currentTimeMillis();
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable && System.currentTimeMillis() - checkedAtMillis <= 2 * checkIntervalMs;
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+}
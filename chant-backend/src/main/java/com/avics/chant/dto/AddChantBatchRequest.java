@@ -0,0 +1,17 @@
+package com.avics.chant.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// entries are validated one by one in the service so a bad entry only fails itself
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AddChantBatchRequest {
+
+    private List<AddChantRequest> entries;
+
+}
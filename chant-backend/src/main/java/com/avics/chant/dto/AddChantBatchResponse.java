@@ -0,0 +1,18 @@
+package com.avics.chant.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class AddChantBatchResponse {
+    private List<BatchEntryResult> results;
+
+    // updated total of every user with at least one accepted entry
+    private List<UserTotalResponse> totals;
+
+}
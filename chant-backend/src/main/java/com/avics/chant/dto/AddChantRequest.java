@@ -3,7 +3,9 @@ package com.avics.chant.dto;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PastOrPresent;
+import javax.validation.constraints.Size;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -22,9 +24,14 @@ public class AddChantRequest {
 	@PastOrPresent(message = "Date cannot be in the future")
     private LocalDate date;
     
+    @NotNull(message = "Count is required")
     @Min(value = 1, message = "Count must be at least 1")
     private Integer count;
 
+    // optional, a retry with the same key is not counted again
+    @Size(max = 64, message = "Idempotency key must be at most 64 characters")
+    private String idempotencyKey;
+
     
 }
 
@@ -0,0 +1,15 @@
+package com.avics.chant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BatchEntryResult {
+    private int index; // position in the request's entries
+    private boolean success;
+    private String message;
+
+}
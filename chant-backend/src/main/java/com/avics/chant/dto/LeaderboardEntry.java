@@ -0,0 +1,16 @@
+package com.avics.chant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class LeaderboardEntry {
+    // users with the same total share a rank, the next rank skips accordingly
+    private Long rank;
+    private String userId;
+    private Long totalChants;
+
+}
@@ -0,0 +1,19 @@
+package com.avics.chant.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class LeaderboardPageResponse {
+    private List<LeaderboardEntry> entries;
+
+    // pass both back as afterTotal/afterUserId to get the next page, null on the last page
+    private Long nextAfterTotal;
+    private String nextAfterUserId;
+
+}
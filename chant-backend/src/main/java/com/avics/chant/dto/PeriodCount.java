@@ -0,0 +1,17 @@
+package com.avics.chant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class PeriodCount {
+    // first day of the day, ISO week (Monday) or month
+    private LocalDate start;
+    private Long count;
+
+}
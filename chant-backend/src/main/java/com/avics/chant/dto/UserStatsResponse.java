@@ -0,0 +1,25 @@
+package com.avics.chant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class UserStatsResponse {
+    private String userid;
+    private LocalDate from;
+    private LocalDate to;
+    private Long totalChants; // within from..to
+    private Integer currentStreak;
+    private Integer longestStreak;
+    private List<PeriodCount> daily;
+    // the first and last week or month can be partial, only days in from..to are counted
+    private List<PeriodCount> weekly;
+    private List<PeriodCount> monthly;
+
+}
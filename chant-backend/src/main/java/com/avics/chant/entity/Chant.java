@@ -18,7 +18,13 @@ public class Chant {
     private Long id;
 
     @Column(nullable = false)
-    private String userIdentifier; // username or phoneNo
+    private Long userId; // users.id
+
+    @Transient
+    private String userIdentifier; // normalized username or phoneNo, for in-memory totals
+
+    @Transient
+    private String idempotencyKey; // client key, recorded in chant_idempotency_keys
 
     @Column(nullable = false)
     private LocalDate chantDate;
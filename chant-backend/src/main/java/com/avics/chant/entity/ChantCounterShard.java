@@ -0,0 +1,21 @@
+package com.avics.chant.entity;
+
+import javax.persistence.*;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "chant_counter_shards")
+public class ChantCounterShard {
+    @Id
+    private Integer slot;
+
+    @Column(nullable = false)
+    private Long total;
+
+}
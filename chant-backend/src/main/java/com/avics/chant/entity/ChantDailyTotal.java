@@ -0,0 +1,32 @@
+package com.avics.chant.entity;
+
+import javax.persistence.*;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// one row per user per day, kept up to date by ChantBatchRepository.upsertDailyTotals
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "chant_daily_totals",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_user_date", columnNames = {"userId", "chantDate"}))
+public class ChantDailyTotal {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private LocalDate chantDate;
+
+    @Column(nullable = false)
+    private Long chantCount;
+
+}
@@ -1,18 +1,63 @@
 package com.avics.chant.exception;
 
+import com.avics.chant.concurrent.RateLimitExceededException;
 import com.avics.chant.dto.ApiResponse;
+import com.avics.chant.metrics.ChantMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    @Autowired
+    private ChantMetrics chantMetrics;
+
     @Value("${chant.msg.error.generic}")
     private String genericErrorMsg;
 
+    @Value("${chant.msg.chant.busy}")
+    private String busyMsg;
+
+    @Value("${chant.msg.rate.limited}")
+    private String rateLimitedMsg;
+
+    // @Valid request bodies, counted with the service's own validation rejections
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<ApiResponse> handleInvalidRequest(MethodArgumentNotValidException ex){
+        chantMetrics.validationRejected(ChantMetrics.INVALID_REQUEST);
+        FieldError error = ex.getBindingResult().getFieldError();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ApiResponse(false, error != null ? error.getDefaultMessage() : genericErrorMsg, null));
+    }
+
+    // a request executor queue is full, shed the request instead of queueing it
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ApiResponse> handleOverload(RejectedExecutionException ex){
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponse(false, busyMsg, null));
+    }
+
+    // one client is over its limit, unlike the 503 above which is for everyone
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ApiResponse> handleRateLimited(RateLimitExceededException ex){
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(new ApiResponse(false, rateLimitedMsg, null));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse> handleGeneric(Exception ex){
         return ResponseEntity
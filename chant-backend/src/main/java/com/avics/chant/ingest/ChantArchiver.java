@@ -0,0 +1,79 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.cache.UserTotalsIndex;
+import com.avics.chant.repository.ChantArchiveRepository;
+import com.avics.chant.repository.ChantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Keeps the chants table to recent rows. Rows dated more than horizon-days
+ * ago are folded into per-user monthly totals in chants_monthly_archive and
+ * deleted, batch-size rows per transaction. Totals, stats and the
+ * leaderboard read the daily rollup, which is not archived, so they are
+ * unaffected; the raw table only serves id-range replays and seeding.
+ */
+@Component
+public class ChantArchiver {
+
+    @Autowired
+    private ChantArchiveRepository archiveRepository;
+
+    @Autowired
+    private ChantRepository chantRepository;
+
+    @Autowired
+    private UserTotalsIndex userTotalsIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${chant.archive.enabled}")
+    private boolean enabled;
+
+    @Value("${chant.archive.horizon-days}")
+    private int horizonDays;
+
+    @Value("${chant.archive.batch-size}")
+    private int batchSize;
+
+    private static final Logger log = LoggerFactory.getLogger(ChantArchiver.class);
+
+    @Scheduled(fixedDelayString = "${chant.archive.interval-ms}",
+            initialDelayString = "${chant.archive.interval-ms}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Long maxId = chantRepository.getMaxId();
+            if (maxId == null) {
+                return;
+            }
+            // the newest row always stays, so MAX(id) never moves back: the totals snapshot checks
+            // against it, and MySQL before 8.0 restarts AUTO_INCREMENT from it
+            long upToId = Math.min(maxId - 1, userTotalsIndex.getSnapshotHighWaterMark());
+            LocalDate cutoff = LocalDate.now().minusDays(horizonDays);
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            long archived = 0;
+            int rows;
+            do {
+                rows = tx.execute(status -> archiveRepository.archiveBatch(cutoff, upToId, batchSize));
+                archived += rows;
+            } while (rows == batchSize);
+            if (archived > 0) {
+                log.info("Archived {} chants dated before {} into monthly totals", archived, cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Error archiving old chants: {}", e.getMessage(), e);
+        }
+    }
+}
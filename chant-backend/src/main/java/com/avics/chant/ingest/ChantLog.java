@@ -0,0 +1,478 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.repository.ChantWalCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead log for chant.ingest.mode=wal. addChant appends the chant
+ * here and answers once it is on disk; {@link ChantLogApplier} then writes
+ * logged chants to the database in the background, so a slow database delays
+ * when a chant shows up in the totals but not the add itself.
+ *
+ * A single thread does all appends: it takes whatever records are waiting,
+ * writes them and fsyncs once for the whole group, so concurrent adds share
+ * the cost of a sync. The log is split into segments of about segment-bytes,
+ * named after their first sequence number, and a segment is deleted once
+ * every chant in it has been applied.
+ *
+ * Records are [body length][CRC32 of body][body]. On startup, a record that
+ * is cut short or fails its checksum marks the end of the log (a write torn
+ * by a crash) and the segment is truncated there.
+ */
+@Component
+@ConditionalOnProperty(name = "chant.ingest.mode", havingValue = "wal")
+public class ChantLog {
+
+    @Autowired
+    private ChantWalCheckpointRepository checkpointRepository;
+
+    @Value("${chant.wal.dir}")
+    private String dir;
+
+    @Value("${chant.wal.segment-bytes}")
+    private long segmentBytes;
+
+    @Value("${chant.wal.sync-timeout-ms}")
+    private long syncTimeoutMs;
+
+    @Value("${chant.ingest.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${chant.ingest.batch-size}")
+    private int batchSize;
+
+    @Value("${chant.ingest.offer-timeout-ms}")
+    private long offerTimeoutMs;
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private static final int HEADER_BYTES = 8;
+
+    // seq, user id, epoch day, count and the two string lengths
+    private static final int MIN_BODY_BYTES = 8 + 8 + 4 + 4 + 2 + 2;
+
+    private static final int MAX_BODY_BYTES = MIN_BODY_BYTES + 2 * 0xFFFF;
+
+    private Path directory;
+
+    private String walId;
+
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+
+    private BlockingQueue<Append> appends;
+
+    private Thread syncer;
+
+    private volatile boolean running;
+
+    // set when a write or fsync failed; the state of the file is unknown, so appends stop
+    private volatile IOException failure;
+
+    // highest sequence number known to be on disk
+    private volatile long syncedSeq;
+
+    private final Object syncedMonitor = new Object();
+
+    // syncer thread only
+    private FileChannel segment;
+
+    private long nextSeq;
+
+    // applier thread only: records up to skipThrough were applied before the last restart
+    private long skipThrough;
+
+    private Long readSegment;
+
+    private FileChannel readChannel;
+
+    private long readPosition;
+
+    private long peekedPosition;
+
+    private static final Logger log = LoggerFactory.getLogger(ChantLog.class);
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        walId = loadWalId();
+        skipThrough = checkpointRepository.getLastSeq(walId);
+
+        long lastSeq = recover();
+        syncedSeq = lastSeq;
+        nextSeq = Math.max(lastSeq, skipThrough) + 1;
+        // appends always go to a fresh segment, recovered ones are only read
+        openSegment(nextSeq);
+
+        appends = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        syncer = new Thread(this::syncLoop, "chant-wal-sync");
+        syncer.start();
+        log.info("Chant write-ahead log {} opened in {}: {} segments, applied through {}, next seq {}",
+                walId, directory.toAbsolutePath(), segments.size(), skipThrough, nextSeq);
+    }
+
+    // identifies this log in chant_wal_checkpoints, so a fresh directory never inherits another log's checkpoint
+    private String loadWalId() throws IOException {
+        Path idFile = directory.resolve("wal.id");
+        if (Files.exists(idFile)) {
+            return new String(Files.readAllBytes(idFile), StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.write(idFile, id.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
+        return id;
+    }
+
+    // returns the last sequence number found on disk, or one before the name of an empty last segment
+    private long recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        long lastSeq = segments.isEmpty() ? 0L : segments.lastKey() - 1;
+        for (Map.Entry<Long, Path> entry : new ArrayList<>(segments.entrySet())) {
+            try (FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long position = 0;
+                ByteBuffer body;
+                while ((body = readRecord(channel, position)) != null) {
+                    lastSeq = Math.max(lastSeq, body.getLong(0));
+                    position += HEADER_BYTES + body.limit();
+                }
+                if (position < channel.size()) {
+                    log.warn("Truncating chant log segment {} from {} to {} bytes after an incomplete record",
+                            entry.getValue().getFileName(), channel.size(), position);
+                    channel.truncate(position);
+                    channel.force(true);
+                }
+                if (position == 0) {
+                    Files.delete(entry.getValue());
+                    segments.remove(entry.getKey());
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Returns true once the chant is on disk. False when the log is full for
+     * the whole offer timeout, the sync took longer than the sync timeout (the
+     * chant may still be logged and applied), the log has failed, or the
+     * application is shutting down.
+     */
+    public boolean append(Chant chant) {
+        if (!running || failure != null) {
+            return false;
+        }
+        Append append = new Append(encode(chant));
+        try {
+            if (!appends.offer(append, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            return append.done.get(syncTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private void syncLoop() {
+        List<Append> group = new ArrayList<>(batchSize);
+        while (running || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                appends.drainTo(group, batchSize - 1);
+                writeGroup(group);
+                for (Append append : group) {
+                    append.done.complete(true);
+                }
+            } catch (InterruptedException e) {
+                // not used to stop the loop, stop() clears running instead
+            } catch (IOException e) {
+                if (failure == null) {
+                    log.error("Chant log write failed, rejecting further appends: {}", e.getMessage(), e);
+                    failure = e;
+                }
+                for (Append append : group) {
+                    append.done.complete(false);
+                }
+            }
+            group.clear();
+        }
+    }
+
+    private void writeGroup(List<Append> group) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        long last = syncedSeq;
+        for (Append append : group) {
+            long seq = nextSeq++;
+            ByteBuffer body = append.body;
+            body.putLong(0, seq);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(0, body.remaining()).putInt(4, checksum(body));
+            if (segment.position() > 0 && segment.position() + HEADER_BYTES + body.remaining() > segmentBytes) {
+                segment.force(false);
+                segment.close();
+                openSegment(seq);
+            }
+            ByteBuffer[] record = {header, body};
+            while (body.hasRemaining()) {
+                segment.write(record);
+            }
+            last = seq;
+        }
+        segment.force(false);
+        syncedSeq = last;
+        synchronized (syncedMonitor) {
+            syncedMonitor.notifyAll();
+        }
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", firstSeq, SEGMENT_SUFFIX));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.put(firstSeq, file);
+        // make the new file's directory entry durable too; not supported everywhere, hence best effort
+        try (FileChannel dirChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync chant log directory: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Up to max logged chants after the last acknowledged one, in log order.
+     * Empty when nothing new is on disk yet. Call {@link #acknowledge} once
+     * they have been applied; until then the same chants are returned again.
+     * Only called from the applier thread.
+     */
+    public Batch peek(int max) throws IOException {
+        List<Chant> chants = new ArrayList<>();
+        long lastSeq = 0;
+        long position = readPosition;
+        while (chants.size() < max) {
+            if (readChannel == null && !openNextReadSegment()) {
+                break;
+            }
+            ByteBuffer body = readRecord(readChannel, position);
+            if (body == null) {
+                // a later segment only exists once this one is complete, so everything in it was read
+                if (chants.isEmpty() && segments.higherKey(readSegment) != null) {
+                    closeReadSegment(true);
+                    position = 0;
+                    continue;
+                }
+                break;
+            }
+            long seq = body.getLong(0);
+            if (seq > syncedSeq) {
+                break;
+            }
+            position += HEADER_BYTES + body.limit();
+            if (seq <= skipThrough) {
+                readPosition = position;
+                continue;
+            }
+            chants.add(decode(body));
+            lastSeq = seq;
+        }
+        peekedPosition = position;
+        return new Batch(chants, lastSeq);
+    }
+
+    public void acknowledge() {
+        readPosition = peekedPosition;
+    }
+
+    private boolean openNextReadSegment() throws IOException {
+        Long next = readSegment == null ? (segments.isEmpty() ? null : segments.firstKey()) : segments.higherKey(readSegment);
+        if (next == null) {
+            return false;
+        }
+        readSegment = next;
+        readChannel = FileChannel.open(segments.get(next), StandardOpenOption.READ);
+        readPosition = 0;
+        return true;
+    }
+
+    private void closeReadSegment(boolean delete) throws IOException {
+        readChannel.close();
+        readChannel = null;
+        if (delete) {
+            Files.deleteIfExists(segments.remove(readSegment));
+        }
+    }
+
+    // waits up to timeoutMs for the next group to reach disk
+    public void awaitSynced(long timeoutMs) throws InterruptedException {
+        synchronized (syncedMonitor) {
+            syncedMonitor.wait(timeoutMs);
+        }
+    }
+
+    public String getWalId() {
+        return walId;
+    }
+
+    public long getSyncedSeq() {
+        return syncedSeq;
+    }
+
+    public long getAppliedSeqAtStart() {
+        return skipThrough;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        syncer.join();
+        List<Append> rejected = new ArrayList<>();
+        appends.drainTo(rejected);
+        for (Append append : rejected) {
+            append.done.complete(false);
+        }
+        segment.close();
+        if (readChannel != null) {
+            closeReadSegment(false);
+        }
+        log.info("Chant write-ahead log closed at seq {}", syncedSeq);
+    }
+
+    private static ByteBuffer encode(Chant chant) {
+        byte[] identifier = chant.getUserIdentifier().getBytes(StandardCharsets.UTF_8);
+        byte[] key = chant.getIdempotencyKey() != null
+                ? chant.getIdempotencyKey().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer body = ByteBuffer.allocate(MIN_BODY_BYTES + identifier.length + key.length);
+        body.putLong(0L) // seq, assigned by the syncer
+                .putLong(chant.getUserId())
+                .putInt((int) chant.getChantDate().toEpochDay())
+                .putInt(chant.getChantCount())
+                .putShort((short) identifier.length).put(identifier)
+                .putShort((short) key.length).put(key);
+        body.flip();
+        return body;
+    }
+
+    private static Chant decode(ByteBuffer body) {
+        body.position(8);
+        Chant chant = new Chant();
+        chant.setUserId(body.getLong());
+        chant.setChantDate(LocalDate.ofEpochDay(body.getInt()));
+        chant.setChantCount(body.getInt());
+        chant.setUserIdentifier(readString(body));
+        String key = readString(body);
+        chant.setIdempotencyKey(key.isEmpty() ? null : key);
+        return chant;
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getShort() & 0xFFFF];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // null when the bytes at position do not hold a whole, valid record
+    private static ByteBuffer readRecord(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (!readFully(channel, header, position)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length < MIN_BODY_BYTES || length > MAX_BODY_BYTES) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (!readFully(channel, body, position + HEADER_BYTES)) {
+            return null;
+        }
+        body.flip();
+        return checksum(body) == header.getInt(4) ? body : null;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(ByteBuffer body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        return (int) crc.getValue();
+    }
+
+    public static class Batch {
+
+        private final List<Chant> chants;
+
+        private final long lastSeq;
+
+        Batch(List<Chant> chants, long lastSeq) {
+            this.chants = Collections.unmodifiableList(chants);
+            this.lastSeq = lastSeq;
+        }
+
+        public List<Chant> getChants() {
+            return chants;
+        }
+
+        public long getLastSeq() {
+            return lastSeq;
+        }
+    }
+
+    private static class Append {
+
+        final ByteBuffer body;
+
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        Append(ByteBuffer body) {
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.repository.ChantWalCheckpointRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Writes chants from the {@link ChantLog} to the database on a single
+ * thread, in log order and in batches. Each batch commits together with the
+ * log's checkpoint, so after a crash or restart the log is replayed from
+ * exactly the first chant not yet written.
+ *
+ * While the database is down the batch is retried with a growing delay and
+ * nothing is dropped; chants keep accumulating in the log. Chants whose
+ * idempotency key is already recorded are skipped by
+ * {@link ChantWriter#writeAll}, since addChant does not check keys against
+ * the database in this mode.
+ */
+@Component
+@ConditionalOnProperty(name = "chant.ingest.mode", havingValue = "wal")
+public class ChantLogApplier {
+
+    @Autowired
+    private ChantLog chantLog;
+
+    @Autowired
+    private ChantWriter chantWriter;
+
+    @Autowired
+    private ChantWalCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chant.ingest.batch-size}")
+    private int batchSize;
+
+    @Value("${chant.ingest.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private volatile long appliedSeq;
+
+    private Thread applier;
+
+    private volatile boolean running;
+
+    private final Object stopMonitor = new Object();
+
+    private static final Logger log = LoggerFactory.getLogger(ChantLogApplier.class);
+
+    @PostConstruct
+    public void start() {
+        appliedSeq = chantLog.getAppliedSeqAtStart();
+        Gauge.builder("chant.wal.backlog", this, a -> chantLog.getSyncedSeq() - a.appliedSeq)
+                .description("Chants in the write-ahead log not yet written to the database")
+                .register(meterRegistry);
+        running = true;
+        applier = new Thread(this::applyLoop, "chant-wal-applier");
+        applier.start();
+    }
+
+    private void applyLoop() {
+        while (running) {
+            try {
+                ChantLog.Batch batch = chantLog.peek(batchSize);
+                if (batch.getChants().isEmpty()) {
+                    chantLog.awaitSynced(flushIntervalMs);
+                    continue;
+                }
+                if (apply(batch)) {
+                    chantLog.acknowledge();
+                    appliedSeq = batch.getLastSeq();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error reading the chant log: {}", e.getMessage(), e);
+                pause(flushIntervalMs);
+            }
+        }
+    }
+
+    // false only when stopped before the batch could be written, it is replayed on the next start
+    private boolean apply(ChantLog.Batch batch) {
+        for (int attempt = 1; running; attempt++) {
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    chantWriter.writeAll(batch.getChants());
+                    checkpointRepository.save(chantLog.getWalId(), batch.getLastSeq());
+                });
+                return true;
+            } catch (Exception e) {
+                long delay = Math.min(flushIntervalMs * attempt, MAX_RETRY_DELAY_MS);
+                log.error("Error applying {} logged chants up to seq {} (attempt {}, retrying in {} ms): {}",
+                        batch.getChants().size(), batch.getLastSeq(), attempt, delay, e.getMessage());
+                pause(delay);
+            }
+        }
+        return false;
+    }
+
+    // woken by stop(); the thread is never interrupted, which could abort a statement mid-way
+    private void pause(long millis) {
+        synchronized (stopMonitor) {
+            try {
+                if (running) {
+                    stopMonitor.wait(millis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        synchronized (stopMonitor) {
+            running = false;
+            stopMonitor.notifyAll();
+        }
+        applier.join();
+        log.info("Chant log applier stopped at seq {}, {} logged chants left to apply on the next start",
+                appliedSeq, chantLog.getSyncedSeq() - appliedSeq);
+    }
+}
@@ -0,0 +1,54 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.repository.ChantBatchRepository;
+import com.avics.chant.repository.ChantDailyTotalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * One-time fill of chant_daily_totals from the raw chants rows and the
+ * monthly archive. Only runs while the rollup table is still empty, so it is
+ * a no-op on every start after the first. Beans that warm from the rollup
+ * depend on this one so it always runs before them.
+ */
+@Component
+public class ChantRollupBackfill {
+
+    @Autowired
+    private ChantDailyTotalRepository dailyTotalRepository;
+
+    @Autowired
+    private ChantBatchRepository chantBatchRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${chant.rollup.backfill-on-startup}")
+    private boolean backfillOnStartup;
+
+    private static final Logger log = LoggerFactory.getLogger(ChantRollupBackfill.class);
+
+    @PostConstruct
+    public void backfill() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                if (dailyTotalRepository.count() == 0) {
+                    int rows = chantBatchRepository.backfillDailyTotals();
+                    log.info("Backfilled {} daily chant totals from raw chants", rows);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error backfilling daily chant totals: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.util.ChantSpillFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Async ingestion mode (chant.ingest.mode=async). addChant hands chants to a
+ * bounded queue and returns; a single flusher thread writes them through
+ * {@link ChantWriter#writeAll} once a batch is full or the flush interval has
+ * passed since the first queued chant, whichever comes first.
+ *
+ * Queued chants are already acknowledged, so none is ever dropped. A batch
+ * still failing after max-attempts (or on its first failure once shutdown
+ * has begun) is spilled to a file under spill-dir, and spilled batches are
+ * written again whenever the queue is idle, including right after a restart.
+ * The flusher is never interrupted, which would abort a write mid-way;
+ * shutdown closes intake and queues a marker after the last chant instead.
+ */
+@Component
+@ConditionalOnProperty(name = "chant.ingest.mode", havingValue = "async")
+public class ChantWriteBehindQueue {
+
+    @Autowired
+    private ChantWriter chantWriter;
+
+    @Value("${chant.ingest.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${chant.ingest.batch-size}")
+    private int batchSize;
+
+    @Value("${chant.ingest.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    @Value("${chant.ingest.offer-timeout-ms}")
+    private long offerTimeoutMs;
+
+    @Value("${chant.ingest.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${chant.ingest.spill-dir}")
+    private String spillDir;
+
+    @Value("${chant.ingest.shutdown-timeout-ms}")
+    private long shutdownTimeoutMs;
+
+    // queued by stop() after the last accepted chant, compared by identity
+    private static final Chant END_OF_INTAKE = new Chant();
+
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private BlockingQueue<Chant> queue;
+
+    // submit holds the read side, so no chant can be queued behind END_OF_INTAKE
+    private final ReentrantReadWriteLock intake = new ReentrantReadWriteLock();
+
+    private boolean open;
+
+    private volatile boolean stopping;
+
+    private Thread flusher;
+
+    private final Object retryMonitor = new Object();
+
+    private long spillSeq;
+
+    // flusher thread only: whether spill-dir may hold batches, and when to try them next
+    private boolean spillPending = true;
+
+    private long nextSpillAttemptMillis;
+
+    private static final Logger log = LoggerFactory.getLogger(ChantWriteBehindQueue.class);
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        open = true;
+        flusher = new Thread(this::flushLoop, "chant-write-behind");
+        flusher.start();
+        log.info("Write-behind ingestion enabled: capacity={}, batchSize={}, flushIntervalMs={}",
+                queueCapacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * Returns false when the queue stayed full for the whole offer timeout,
+     * or when the application is shutting down.
+     */
+    public boolean submit(Chant chant) {
+        intake.readLock().lock();
+        try {
+            return open && queue.offer(chant, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            intake.readLock().unlock();
+        }
+    }
+
+    private void flushLoop() {
+        List<Chant> batch = new ArrayList<>(batchSize);
+        boolean ended = false;
+        while (!ended) {
+            try {
+                Chant first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    writeSpilled();
+                    continue;
+                }
+                if (first == END_OF_INTAKE) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize && !ended) {
+                    int from = batch.size();
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        long remaining = deadline - System.nanoTime();
+                        Chant next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    ended = removeEndOfIntake(batch, from);
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // not expected, stop() never interrupts; keep going so nothing queued is left behind
+                log.warn("Write-behind flusher interrupted, ignoring");
+            }
+        }
+        writeSpilled();
+    }
+
+    private static boolean removeEndOfIntake(List<Chant> batch, int from) {
+        for (int i = from; i < batch.size(); i++) {
+            if (batch.get(i) == END_OF_INTAKE) {
+                // always the last chant ever queued
+                batch.subList(i, batch.size()).clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns once the batch is in the database or in a spill file
+    private void flush(List<Chant> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                chantWriter.writeAll(batch);
+                return;
+            } catch (Exception e) {
+                log.error("Error flushing {} chants (attempt {}/{}): {}", batch.size(), attempt, maxAttempts, e.getMessage());
+            }
+            if (attempt >= maxAttempts || stopping) {
+                try {
+                    Path file = spill(batch);
+                    log.warn("Spilled {} chants to {} after {} failed flush attempts", batch.size(), file, attempt);
+                    return;
+                } catch (IOException e) {
+                    // with neither the database nor the disk available, keep retrying both
+                    log.error("Error spilling {} chants: {}", batch.size(), e.getMessage(), e);
+                } catch (RuntimeException e) {
+                    // not the disk: some chant in the batch cannot be encoded, so it cannot be written either
+                    if (batch.size() == 1) {
+                        log.error("Discarding chant that can be neither written nor spilled: {}", batch.get(0), e);
+                        return;
+                    }
+                    log.error("Error spilling {} chants, flushing them one by one: {}", batch.size(), e.getMessage());
+                    for (Chant chant : batch) {
+                        flush(Collections.singletonList(chant));
+                    }
+                    return;
+                }
+            }
+            pause(Math.min(flushIntervalMs * attempt, MAX_RETRY_DELAY_MS));
+        }
+    }
+
+    private Path spill(List<Chant> batch) throws IOException {
+        Path file = Paths.get(spillDir, String.format("%020d-%06d.spill", System.currentTimeMillis(), spillSeq++));
+        ChantSpillFile.write(file, batch);
+        spillPending = true;
+        // the database just failed, give it a while before writing the spill back
+        nextSpillAttemptMillis = System.currentTimeMillis() + MAX_RETRY_DELAY_MS;
+        return file;
+    }
+
+    // oldest first; stops at the first failure and leaves the rest for the next idle poll
+    private void writeSpilled() {
+        if (!spillPending || (!stopping && System.currentTimeMillis() < nextSpillAttemptMillis)) {
+            return;
+        }
+        Path dir = Paths.get(spillDir);
+        if (!Files.isDirectory(dir)) {
+            spillPending = false;
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.spill")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.error("Error listing spilled chants in {}: {}", dir, e.getMessage());
+            return;
+        }
+        files.sort(null);
+        for (Path file : files) {
+            try {
+                List<Chant> chants = ChantSpillFile.read(file);
+                chantWriter.writeAll(chants);
+                Files.delete(file);
+                log.info("Wrote {} spilled chants from {}", chants.size(), file);
+            } catch (Exception e) {
+                log.warn("Spilled chants in {} not written yet: {}", file, e.getMessage());
+                nextSpillAttemptMillis = System.currentTimeMillis() + MAX_RETRY_DELAY_MS;
+                return;
+            }
+        }
+        spillPending = false;
+    }
+
+    // woken by stop(), so a shutdown does not wait out a retry delay
+    private void pause(long millis) {
+        synchronized (retryMonitor) {
+            try {
+                retryMonitor.wait(stopping ? Math.min(millis, flushIntervalMs) : millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        intake.writeLock().lock();
+        try {
+            open = false;
+        } finally {
+            intake.writeLock().unlock();
+        }
+        synchronized (retryMonitor) {
+            stopping = true;
+            retryMonitor.notifyAll();
+        }
+        log.info("Write-behind queue closed, flushing {} queued chants", queue.size());
+        // waits while the queue is full, the flusher keeps taking from it
+        if (!queue.offer(END_OF_INTAKE, shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+            log.error("Write-behind queue still full after {} ms, {} chants not flushed", shutdownTimeoutMs, queue.size());
+            return;
+        }
+        flusher.join(shutdownTimeoutMs);
+        if (flusher.isAlive()) {
+            log.error("Write-behind flusher still running after {} ms with {} chants queued; "
+                    + "they are spilled to {} if the database stays unavailable", shutdownTimeoutMs, queue.size(), spillDir);
+        }
+    }
+}
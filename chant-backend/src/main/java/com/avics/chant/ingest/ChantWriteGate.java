@@ -0,0 +1,53 @@
+package com.avics.chant.ingest;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Lets a reader briefly stop chant writes on this instance. Every write
+ * transaction holds the shared side from its first insert until it has
+ * completed, after-commit listeners included, so whoever holds the exclusive
+ * side sees no chant ids that are allocated but not yet applied in memory.
+ */
+@Component
+public class ChantWriteGate {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // must be called inside the write transaction, before any chant row is inserted
+    public void enter() {
+        lock.readLock().lock();
+        try {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // lowest precedence, so this runs after the totals listeners have applied the write
+                @Override
+                public void afterCompletion(int status) {
+                    lock.readLock().unlock();
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs action with no write transaction in flight. Returns null without
+     * running it when the writes in flight did not finish within the timeout.
+     */
+    public <T> T whileClosed(long timeoutMs, Supplier<T> action) throws InterruptedException {
+        if (!lock.writeLock().tryLock(timeoutMs, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
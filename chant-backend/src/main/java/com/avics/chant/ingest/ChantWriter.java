@@ -0,0 +1,97 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.repository.ChantBatchRepository;
+import com.avics.chant.repository.ChantRepository;
+import com.avics.chant.repository.IdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Component
+public class ChantWriter {
+
+    @Autowired
+    private ChantRepository chantRepository;
+
+    @Autowired
+    private ChantBatchRepository chantBatchRepository;
+
+    @Autowired
+    private ShardedChantCounter shardedChantCounter;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ChantWriteGate writeGate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // a reused idempotency key fails with DuplicateKeyException before anything is written
+    @Transactional
+    public Chant write(Chant chant) {
+        writeGate.enter();
+        if (chant.getIdempotencyKey() != null) {
+            idempotencyKeyRepository.insert(chant.getUserId(), chant.getIdempotencyKey());
+        }
+        Chant saved = chantRepository.save(chant);
+        chantBatchRepository.upsertDailyTotals(Collections.singletonList(saved));
+        shardedChantCounter.increment(chant.getChantCount());
+        eventPublisher.publishEvent(new ChantsWrittenEvent(Collections.singletonList(saved)));
+        return saved;
+    }
+
+    /**
+     * Writes the chants whose idempotency key, if any, is not recorded yet
+     * and returns them; the others are skipped. Keys are claimed first, so of
+     * two concurrent writes with the same key only one inserts its chant.
+     */
+    @Transactional
+    public List<Chant> writeAll(List<Chant> chants) {
+        if (chants.isEmpty()) {
+            return chants;
+        }
+        writeGate.enter();
+        List<Chant> fresh = withClaimedKeys(chants);
+        if (fresh.isEmpty()) {
+            return fresh;
+        }
+        chantBatchRepository.insertAll(fresh);
+        chantBatchRepository.upsertDailyTotals(fresh);
+        long delta = 0;
+        for (Chant chant : fresh) {
+            delta += chant.getChantCount();
+        }
+        shardedChantCounter.increment(delta);
+        eventPublisher.publishEvent(new ChantsWrittenEvent(fresh));
+        return fresh;
+    }
+
+    private List<Chant> withClaimedKeys(List<Chant> chants) {
+        List<Object[]> keys = new ArrayList<>();
+        for (Chant chant : chants) {
+            if (chant.getIdempotencyKey() != null) {
+                keys.add(new Object[]{chant.getUserId(), chant.getIdempotencyKey()});
+            }
+        }
+        if (keys.isEmpty()) {
+            return chants;
+        }
+        boolean[] claimed = idempotencyKeyRepository.claim(keys);
+        List<Chant> fresh = new ArrayList<>(chants.size());
+        int k = 0;
+        for (Chant chant : chants) {
+            if (chant.getIdempotencyKey() == null || claimed[k++]) {
+                fresh.add(chant);
+            }
+        }
+        return fresh;
+    }
+}
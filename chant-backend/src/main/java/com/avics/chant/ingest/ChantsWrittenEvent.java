@@ -0,0 +1,22 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.entity.Chant;
+
+import java.util.List;
+
+/**
+ * Published by {@link ChantWriter} inside the write transaction. Listeners
+ * use @TransactionalEventListener so they only see committed chants.
+ */
+public class ChantsWrittenEvent {
+
+    private final List<Chant> chants;
+
+    public ChantsWrittenEvent(List<Chant> chants) {
+        this.chants = chants;
+    }
+
+    public List<Chant> getChants() {
+        return chants;
+    }
+}
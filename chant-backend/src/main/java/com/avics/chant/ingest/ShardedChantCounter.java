@@ -0,0 +1,68 @@
+package com.avics.chant.ingest;
+
+import com.avics.chant.entity.ChantCounterShard;
+import com.avics.chant.repository.ChantCounterShardRepository;
+import com.avics.chant.repository.ChantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Global chant total spread over a fixed number of counter rows. Each write
+ * bumps one randomly chosen slot inside the caller's transaction, so
+ * concurrent adds rarely contend on the same row and reading the total only
+ * sums the slots.
+ */
+@Component
+public class ShardedChantCounter {
+
+    @Autowired
+    private ChantCounterShardRepository shardRepository;
+
+    @Autowired
+    private ChantRepository chantRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${chant.counter.shards}")
+    private int shards;
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedChantCounter.class);
+
+    @PostConstruct
+    public void initSlots() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                long existing = shardRepository.count();
+                if (existing == 0) {
+                    // first start: carry the current total over once, into slot 0
+                    Long total = chantRepository.getTotalChants();
+                    shardRepository.save(new ChantCounterShard(0, total != null ? total : 0L));
+                    existing = 1;
+                }
+                for (int slot = (int) existing; slot < shards; slot++) {
+                    shardRepository.save(new ChantCounterShard(slot, 0L));
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error initializing chant counter shards: {}", e.getMessage(), e);
+        }
+    }
+
+    // must run inside the transaction that inserts the chant rows
+    public void increment(long delta) {
+        shardRepository.increment(ThreadLocalRandom.current().nextInt(shards), delta);
+    }
+
+    public Long getTotal() {
+        return shardRepository.getTotal();
+    }
+}
@@ -0,0 +1,271 @@
+package com.avics.chant.live;
+
+import com.avics.chant.dto.TotalChantsResponse;
+import com.avics.chant.dto.UserTotalResponse;
+import com.avics.chant.entity.Chant;
+import com.avics.chant.ingest.ChantsWrittenEvent;
+import com.avics.chant.service.ChantService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pushes total updates to SSE subscribers. Writes only mark users dirty; a
+ * single ticker reads the totals at most once per interval and sends each
+ * subscriber what changed since its last event, so the cost follows the tick
+ * rate rather than the number of adds.
+ *
+ * Every subscriber has at most one send in flight; a tick that finds the
+ * previous send still queued or running skips it (the next one carries the
+ * latest values anyway). A subscriber whose own write has been blocked for
+ * longer than send-timeout-ms is dropped, and the sender thread stuck in
+ * that write is replaced until it returns, so slow clients never hold up
+ * the others.
+ *
+ * The global total is read from the counter shards every tick, so adds on
+ * other instances show up too. Per-user changes are only seen for adds made
+ * through this instance.
+ */
+@Component
+public class ChantTotalsBroadcaster {
+
+    @Autowired
+    private ChantService chantService;
+
+    @Value("${chant.live.max-subscribers}")
+    private int maxSubscribers;
+
+    @Value("${chant.live.timeout-ms}")
+    private long timeoutMs;
+
+    @Value("${chant.live.send-timeout-ms}")
+    private long sendTimeoutMs;
+
+    @Value("${chant.live.sender-threads}")
+    private int senderThreads;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // listeners add under the read side, tick() swaps the set under the write side
+    private final ReentrantReadWriteLock dirtyLock = new ReentrantReadWriteLock();
+
+    private Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor senders;
+
+    // sender threads blocked in a write to a dropped subscriber, guarded by this
+    private int stuckSenders;
+
+    private static final Logger log = LoggerFactory.getLogger(ChantTotalsBroadcaster.class);
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNo = new AtomicInteger();
+        senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "chant-live-sender-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns null when the subscriber limit has been reached. userId is the
+     * normalized identifier to follow, or null for the global total only.
+     */
+    public SseEmitter subscribe(String userId) {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, userId);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // runs after UserTotalsIndex has applied the same event, see its @Order
+    @TransactionalEventListener
+    public void onChantsWritten(ChantsWrittenEvent event) {
+        dirtyLock.readLock().lock();
+        try {
+            for (Chant chant : event.getChants()) {
+                dirtyUsers.add(chant.getUserIdentifier());
+            }
+        } finally {
+            dirtyLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chant.live.tick-interval-ms}")
+    public void tick() {
+        Set<String> dirty;
+        dirtyLock.writeLock().lock();
+        try {
+            dirty = dirtyUsers;
+            dirtyUsers = ConcurrentHashMap.newKeySet();
+        } finally {
+            dirtyLock.writeLock().unlock();
+        }
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            long globalTotal = chantService.getTotalChants().getTotalChants();
+            // one lookup per followed user per tick, however many tabs follow them
+            Map<String, Long> userTotals = new HashMap<>();
+            for (Subscriber subscriber : subscribers) {
+                String userId = subscriber.userId;
+                boolean sendUser = userId != null && (subscriber.lastUserTotal < 0 || subscriber.userPending || dirty.contains(userId));
+                Long userTotal = sendUser
+                        ? userTotals.computeIfAbsent(userId, id -> chantService.getUserTotal(id).getTotalCount())
+                        : null;
+                boolean sendGlobal = globalTotal != subscriber.lastGlobalTotal;
+                if (userTotal != null && userTotal == subscriber.lastUserTotal) {
+                    userTotal = null;
+                    subscriber.userPending = false;
+                }
+                if (sendGlobal || userTotal != null) {
+                    offer(subscriber, sendGlobal ? globalTotal : null, userTotal);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error broadcasting chant totals: {}", e.getMessage(), e);
+        }
+    }
+
+    private void offer(Subscriber subscriber, Long globalTotal, Long userTotal) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            if (userTotal != null) {
+                // the user is no longer dirty next tick, remember to send it then
+                subscriber.userPending = true;
+            }
+            long started = subscriber.writeStartedNanos;
+            if (started != 0 && System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs)) {
+                dropSlow(subscriber);
+            }
+            return;
+        }
+        senders.execute(() -> {
+            subscriber.writeStartedNanos = System.nanoTime();
+            boolean failed = false;
+            try {
+                if (globalTotal != null) {
+                    subscriber.emitter.send(SseEmitter.event().name("total")
+                            .data(new TotalChantsResponse(globalTotal)));
+                    subscriber.lastGlobalTotal = globalTotal;
+                }
+                if (userTotal != null) {
+                    subscriber.emitter.send(SseEmitter.event().name("user")
+                            .data(new UserTotalResponse(subscriber.userId, userTotal)));
+                    subscriber.lastUserTotal = userTotal;
+                    subscriber.userPending = false;
+                }
+            } catch (Exception e) {
+                // client went away
+                failed = true;
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(e);
+            } finally {
+                boolean wasSlow;
+                synchronized (subscriber) {
+                    subscriber.writeStartedNanos = 0;
+                    wasSlow = subscriber.slow;
+                }
+                if (wasSlow) {
+                    resizeSenders(-1);
+                    if (!failed) {
+                        subscriber.emitter.complete();
+                    }
+                }
+                subscriber.sending.set(false);
+            }
+        });
+    }
+
+    // the blocked write cannot be cut short; it returns at the latest when the connector's write timeout fires
+    private void dropSlow(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.writeStartedNanos == 0 || subscriber.slow) {
+                return;
+            }
+            subscriber.slow = true;
+        }
+        subscribers.remove(subscriber);
+        log.info("Dropping live subscriber whose send has been blocked for over {} ms", sendTimeoutMs);
+        resizeSenders(1);
+    }
+
+    private synchronized void resizeSenders(int delta) {
+        stuckSenders += delta;
+        int size = senderThreads + stuckSenders;
+        // maximum first when growing and core first when shrinking, so core never exceeds maximum
+        if (delta > 0) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    private static class Subscriber {
+
+        final SseEmitter emitter;
+
+        final String userId;
+
+        final AtomicBoolean sending = new AtomicBoolean();
+
+        // when the current write started, 0 while none is running
+        volatile long writeStartedNanos;
+
+        // dropped while a write was blocked, guarded by the subscriber
+        boolean slow;
+
+        // -1 until the first event so a new subscriber gets the current values
+        volatile long lastGlobalTotal = -1;
+
+        volatile long lastUserTotal = -1;
+
+        volatile boolean userPending;
+
+        Subscriber(SseEmitter emitter, String userId) {
+            this.emitter = emitter;
+            this.userId = userId;
+        }
+    }
+}
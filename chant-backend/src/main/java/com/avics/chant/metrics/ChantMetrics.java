@@ -0,0 +1,66 @@
+package com.avics.chant.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business counters next to the timers from @Timed. Reasons for validation
+ * rejections are a small fixed set so the tag stays low-cardinality.
+ */
+@Component
+public class ChantMetrics {
+
+    public static final String FUTURE_DATE = "future_date";
+
+    public static final String INVALID_REQUEST = "invalid_request";
+
+    public static final String BATCH_SIZE = "batch_size";
+
+    private final MeterRegistry registry;
+
+    private final Counter singleAdds;
+
+    private final Counter batchAdds;
+
+    private final Counter duplicateAdds;
+
+    private final Counter autoRegistrations;
+
+    public ChantMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.singleAdds = Counter.builder("chant.adds").description("Chant entries accepted")
+                .tag("path", "single").register(registry);
+        this.batchAdds = Counter.builder("chant.adds").description("Chant entries accepted")
+                .tag("path", "batch").register(registry);
+        this.duplicateAdds = Counter.builder("chant.adds.duplicate")
+                .description("Chant entries skipped because their idempotency key was already recorded")
+                .register(registry);
+        this.autoRegistrations = Counter.builder("chant.users.auto.registered")
+                .description("Phone users auto-registered by a chant, concurrent first adds for one number may each count").register(registry);
+    }
+
+    public void chantAdded() {
+        singleAdds.increment();
+    }
+
+    public void chantsAdded(int entries) {
+        batchAdds.increment(entries);
+    }
+
+    public void duplicateAdded() {
+        duplicateAdds.increment();
+    }
+
+    public void userAutoRegistered() {
+        autoRegistrations.increment();
+    }
+
+    public void validationRejected(String reason) {
+        registry.counter("chant.validation.rejected", "reason", reason).increment();
+    }
+
+    public void rateLimited(String limit) {
+        registry.counter("chant.rate.limited", "limit", limit).increment();
+    }
+}
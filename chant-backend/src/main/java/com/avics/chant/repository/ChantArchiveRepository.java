@@ -0,0 +1,63 @@
+package com.avics.chant.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Moves raw chants rows into chants_monthly_archive. Callers run
+ * {@link #archiveBatch} in a transaction, so the monthly totals and the
+ * deletion of the rows they cover commit together.
+ */
+@Repository
+public class ChantArchiveRepository {
+
+    // locks the rows, so two instances archiving at once cannot both count them
+    private static final String SELECT_BATCH =
+            "SELECT id, user_id, chant_date, chant_count FROM chants " +
+            "WHERE chant_date < ? AND id <= ? ORDER BY id LIMIT ? FOR UPDATE";
+
+    private static final String UPSERT_MONTH =
+            "INSERT INTO chants_monthly_archive (user_id, month_start, chant_count, chant_rows) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE chant_count = chant_count + VALUES(chant_count), " +
+            "chant_rows = chant_rows + VALUES(chant_rows)";
+
+    private static final String DELETE_CHANT = "DELETE FROM chants WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Archives up to limit rows dated before cutoff with an id of at most
+     * upToId, oldest ids first. Returns how many rows were archived, 0 once
+     * there are none left.
+     */
+    public int archiveBatch(LocalDate cutoff, long upToId, int limit) {
+        List<Long> ids = new ArrayList<>();
+        // user -> month -> {chant count, rows}, sorted so concurrent upserts lock in the same order
+        Map<Long, Map<LocalDate, long[]>> months = new TreeMap<>();
+        jdbcTemplate.query(SELECT_BATCH, rs -> {
+            ids.add(rs.getLong(1));
+            long[] month = months.computeIfAbsent(rs.getLong(2), k -> new TreeMap<>())
+                    .computeIfAbsent(rs.getDate(3).toLocalDate().withDayOfMonth(1), k -> new long[2]);
+            month[0] += rs.getInt(4);
+            month[1]++;
+        }, Date.valueOf(cutoff), upToId, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        months.forEach((userId, byMonth) -> byMonth.forEach((monthStart, month) ->
+                rows.add(new Object[]{userId, Date.valueOf(monthStart), month[0], month[1]})));
+        jdbcTemplate.batchUpdate(UPSERT_MONTH, rows);
+        jdbcTemplate.batchUpdate(DELETE_CHANT, ids, ids.size(), (ps, id) -> ps.setLong(1, id));
+        return ids.size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.avics.chant.repository;
+
+import com.avics.chant.entity.Chant;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Plain JDBC writes for chants. The entity uses IDENTITY keys, which stops
+ * Hibernate from batching inserts, so bulk paths go through here instead.
+ * With rewriteBatchedStatements=true on the MySQL URL each batch is sent as
+ * one multi-row INSERT.
+ */
+@Repository
+public class ChantBatchRepository {
+
+    private static final String INSERT_CHANT =
+            "INSERT INTO chants (user_id, chant_date, chant_count) VALUES (?, ?, ?)";
+
+    private static final String UPSERT_DAILY_TOTAL =
+            "INSERT INTO chant_daily_totals (user_id, chant_date, chant_count) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE chant_count = chant_count + VALUES(chant_count)";
+
+    // archived months have no per-day breakdown left, their total goes on the first of the month
+    private static final String BACKFILL_DAILY_TOTALS =
+            "INSERT INTO chant_daily_totals (user_id, chant_date, chant_count) " +
+            "SELECT user_id, chant_date, SUM(chant_count) FROM (" +
+            "SELECT user_id, chant_date, chant_count FROM chants " +
+            "UNION ALL SELECT user_id, month_start, chant_count FROM chants_monthly_archive" +
+            ") t GROUP BY user_id, chant_date";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<Chant> chants) {
+        jdbcTemplate.batchUpdate(INSERT_CHANT, chants, chants.size(), (ps, chant) -> {
+            ps.setLong(1, chant.getUserId());
+            ps.setDate(2, Date.valueOf(chant.getChantDate()));
+            ps.setInt(3, chant.getChantCount());
+        });
+    }
+
+    public void upsertDailyTotals(List<Chant> chants) {
+        // collapse to one row per (user, day) and keep a stable order so
+        // concurrent batches lock the rollup rows in the same sequence
+        Map<Long, Map<LocalDate, Long>> totals = new TreeMap<>();
+        for (Chant chant : chants) {
+            totals.computeIfAbsent(chant.getUserId(), k -> new TreeMap<>())
+                    .merge(chant.getChantDate(), (long) chant.getChantCount(), Long::sum);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        totals.forEach((userId, days) -> days.forEach((day, count) ->
+                rows.add(new Object[]{userId, Date.valueOf(day), count})));
+        jdbcTemplate.batchUpdate(UPSERT_DAILY_TOTAL, rows);
+    }
+
+    public int backfillDailyTotals() {
+        return jdbcTemplate.update(BACKFILL_DAILY_TOTALS);
+    }
+}
@@ -0,0 +1,19 @@
+package com.avics.chant.repository;
+
+import com.avics.chant.entity.ChantCounterShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChantCounterShardRepository extends JpaRepository<ChantCounterShard, Integer> {
+
+    @Modifying
+    @Query("UPDATE ChantCounterShard s SET s.total = s.total + :delta WHERE s.slot = :slot")
+    int increment(@Param("slot") int slot, @Param("delta") long delta);
+
+    @Query("SELECT SUM(s.total) FROM ChantCounterShard s")
+    Long getTotal();
+}
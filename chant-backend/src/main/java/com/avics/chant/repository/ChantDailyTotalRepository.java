@@ -0,0 +1,28 @@
+package com.avics.chant.repository;
+
+import com.avics.chant.dto.UserChantResponse;
+import com.avics.chant.entity.ChantDailyTotal;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChantDailyTotalRepository extends JpaRepository<ChantDailyTotal, Long> {
+
+    @Query("SELECT SUM(d.chantCount) FROM ChantDailyTotal d WHERE d.userId = :userId")
+    Long getUserTotal(@Param("userId") Long userId);
+
+    @Query("SELECT SUM(d.chantCount) FROM ChantDailyTotal d")
+    Long getTotalChants();
+
+    // grouped on the numeric key, the identifier is only joined in for the response
+    @Query("SELECT new com.avics.chant.dto.UserChantResponse(COALESCE(u.username, u.phoneNo), SUM(d.chantCount)) " +
+            "FROM ChantDailyTotal d, User u WHERE u.id = d.userId GROUP BY u.id, u.username, u.phoneNo")
+    List<UserChantResponse> getUserChantCounts();
+
+    List<ChantDailyTotal> findByUserIdOrderByChantDate(Long userId);
+}
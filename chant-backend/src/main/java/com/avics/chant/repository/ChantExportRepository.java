@@ -0,0 +1,72 @@
+package com.avics.chant.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams per-user totals row by row to a callback instead of building a
+ * list. Uses its own JdbcTemplate with a fetch size so the driver does not
+ * buffer the whole result. On MySQL that is Integer.MIN_VALUE, which makes
+ * Connector/J stream these statements only; useCursorFetch=true on the URL
+ * would do it too, but turns on server-side prepares for every statement.
+ */
+@Repository
+public class ChantExportRepository {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${chant.export.fetch-size}")
+    private int fetchSize;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void init() throws MetaDataAccessException {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        jdbcTemplate.setFetchSize("MySQL".equals(product) ? Integer.MIN_VALUE : fetchSize);
+    }
+
+    public void streamUserChantCounts(LocalDate from, LocalDate to, RowCallbackHandler handler) {
+        StringBuilder sql = new StringBuilder("SELECT COALESCE(u.username, u.phone_no), t.total FROM "
+                + "(SELECT user_id, SUM(chant_count) AS total FROM chant_daily_totals");
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(args.isEmpty() ? " WHERE" : " AND").append(" chant_date >= ?");
+            args.add(Date.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(args.isEmpty() ? " WHERE" : " AND").append(" chant_date <= ?");
+            args.add(Date.valueOf(to));
+        }
+        sql.append(" GROUP BY user_id) t JOIN users u ON u.id = t.user_id");
+        jdbcTemplate.query(sql.toString(), handler, args.toArray());
+    }
+
+    // ordered so each user's days arrive together and in date order
+    public void streamUserDailyTotals(RowCallbackHandler handler) {
+        jdbcTemplate.query("SELECT COALESCE(u.username, u.phone_no), d.chant_date, d.chant_count "
+                + "FROM chant_daily_totals d JOIN users u ON u.id = d.user_id ORDER BY d.user_id, d.chant_date", handler);
+    }
+
+    // per-user sums of the raw rows with afterId < id <= upToId, a primary key range scan
+    public void streamUserTotalsBetweenIds(long afterId, long upToId, RowCallbackHandler handler) {
+        jdbcTemplate.query("SELECT COALESCE(u.username, u.phone_no), t.total FROM "
+                + "(SELECT user_id, SUM(chant_count) AS total FROM chants WHERE id > ? AND id <= ? GROUP BY user_id) t "
+                + "JOIN users u ON u.id = t.user_id", handler, afterId, upToId);
+    }
+}
@@ -1,27 +1,20 @@
 package com.avics.chant.repository;
 
-import com.avics.chant.dto.UserChantResponse;
 import com.avics.chant.entity.Chant;
 
-import java.util.List;
-
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+// aggregate reads go through ChantDailyTotalRepository, raw rows are only scanned for one-off seeding;
+// rows past the archive horizon live on as monthly totals in chants_monthly_archive
 @Repository
 public interface ChantRepository extends JpaRepository<Chant, Long> {
 
-    @Query("SELECT SUM(c.chantCount) FROM Chant c WHERE c.userIdentifier = :userId")
-    Long getUserTotal(@Param("userId") String userId);
-
-    @Query("SELECT SUM(c.chantCount) FROM Chant c")
+    @Query(value = "SELECT (SELECT COALESCE(SUM(chant_count), 0) FROM chants) "
+            + "+ (SELECT COALESCE(SUM(chant_count), 0) FROM chants_monthly_archive)", nativeQuery = true)
     Long getTotalChants();
-    
-    @Query("SELECT new com.avics.chant.dto.UserChantResponse(c.userIdentifier, SUM(c.chantCount)) " +
-    	       "FROM Chant c GROUP BY c.userIdentifier")
-    	List<UserChantResponse> getUserChantCounts();
 
-    
+    @Query("SELECT MAX(c.id) FROM Chant c")
+    Long getMaxId();
 }
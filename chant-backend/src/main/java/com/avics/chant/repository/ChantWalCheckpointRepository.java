@@ -0,0 +1,27 @@
+package com.avics.chant.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class ChantWalCheckpointRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 0 when nothing from this log has been applied yet
+    public long getLastSeq(String walId) {
+        List<Long> seqs = jdbcTemplate.queryForList("SELECT last_seq FROM chant_wal_checkpoints WHERE wal_id = ?",
+                Long.class, walId);
+        return seqs.isEmpty() ? 0L : seqs.get(0);
+    }
+
+    // must run in the transaction that writes the chants up to lastSeq
+    public void save(String walId, long lastSeq) {
+        jdbcTemplate.update("INSERT INTO chant_wal_checkpoints (wal_id, last_seq) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE last_seq = VALUES(last_seq)", walId, lastSeq);
+    }
+}
@@ -0,0 +1,88 @@
+package com.avics.chant.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+public class IdempotencyKeyRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // throws DuplicateKeyException when the key was already used by this user
+    public void insert(long userId, String key) {
+        jdbcTemplate.update("INSERT INTO chant_idempotency_keys (user_id, idempotency_key, created_at) VALUES (?, ?, ?)",
+                userId, key, Timestamp.from(Instant.now()));
+    }
+
+    // INSERT ... SELECT rather than VALUES: with rewriteBatchedStatements Connector/J turns a VALUES batch
+    // into one multi-row insert and reports SUCCESS_NO_INFO for every row, this form keeps a count per key
+    private static final String CLAIM = "INSERT IGNORE INTO chant_idempotency_keys (user_id, idempotency_key, created_at) "
+            + "SELECT ?, ?, ? FROM DUAL";
+
+    /**
+     * Records each (user id, key) unless it is already there, including
+     * earlier in the same list. The unique key decides: true where this call
+     * recorded the key, false where it was already used. A concurrent
+     * transaction holding the same key makes this wait for its outcome.
+     */
+    public boolean[] claim(List<Object[]> userIdAndKeys) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int[] counts = jdbcTemplate.batchUpdate(CLAIM, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Object[] row = userIdAndKeys.get(i);
+                ps.setLong(1, (Long) row[0]);
+                ps.setString(2, (String) row[1]);
+                ps.setTimestamp(3, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return userIdAndKeys.size();
+            }
+        });
+        boolean[] claimed = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                // guessing either way would count a chant twice or lose it
+                throw new IllegalStateException("Driver did not report whether idempotency key was recorded");
+            }
+            claimed[i] = counts[i] > 0;
+        }
+        return claimed;
+    }
+
+    public Set<String> findExisting(long userId, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptySet();
+        }
+        StringBuilder sql = new StringBuilder("SELECT idempotency_key FROM chant_idempotency_keys WHERE user_id = ? AND idempotency_key IN (");
+        Object[] args = new Object[keys.size() + 1];
+        args[0] = userId;
+        int i = 1;
+        for (String key : keys) {
+            sql.append(i > 1 ? ", ?" : "?");
+            args[i++] = key;
+        }
+        sql.append(')');
+        return new HashSet<>(jdbcTemplate.queryForList(sql.toString(), String.class, args));
+    }
+
+    public int deleteOlderThan(Instant cutoff) {
+        return jdbcTemplate.update("DELETE FROM chant_idempotency_keys WHERE created_at < ?", Timestamp.from(cutoff));
+    }
+}
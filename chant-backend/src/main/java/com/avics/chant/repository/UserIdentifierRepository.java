@@ -0,0 +1,55 @@
+package com.avics.chant.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.function.Consumer;
+
+// streams every known identifier without materializing User entities
+@Repository
+public class UserIdentifierRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void forEachIdentifier(Consumer<String> consumer) {
+        jdbcTemplate.query("SELECT username, phone_no FROM users", rs -> {
+            String username = rs.getString(1);
+            String phoneNo = rs.getString(2);
+            if (username != null) {
+                consumer.accept(username);
+            }
+            if (phoneNo != null) {
+                consumer.accept(phoneNo);
+            }
+        });
+    }
+
+    /**
+     * Returns the id of the user with this phone number, inserting it first if
+     * needed. Concurrent calls for one number all get the same row and none
+     * fails on the unique key. On MySQL the id comes back with the insert
+     * (LAST_INSERT_ID(id) is set for an existing row too); databases that
+     * return no key for the duplicate case are asked with a SELECT.
+     */
+    public long upsertPhoneUser(String phoneNo) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO users (phone_no) VALUES (?) ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, phoneNo);
+            return ps;
+        }, keyHolder);
+        Number id = keyHolder.getKeyList().isEmpty() ? null : (Number) keyHolder.getKeyList().get(0).values().iterator().next();
+        if (id != null) {
+            return id.longValue();
+        }
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE phone_no = ?", Long.class, phoneNo);
+    }
+}
@@ -9,7 +9,8 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 	
-    Optional<User> findByUsernameIgnoreCase(String username);
+    // usernames are stored uppercase, pass the normalized value so the unique index is used
+    Optional<User> findByUsername(String username);
     
     Optional<User> findByPhoneNo(String phoneNo);
 }
@@ -1,5 +1,8 @@
 package com.avics.chant.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.util.List;
 
 import com.avics.chant.dto.*;
@@ -7,10 +10,20 @@ import com.avics.chant.dto.*;
 public interface ChantService {
 	
     ApiResponse addChant(AddChantRequest request);
+
+    ApiResponse addChants(AddChantBatchRequest request);
     
     UserTotalResponse getUserTotal(String userId);
     
     TotalChantsResponse getTotalChants();
     
     List<UserChantResponse> getAllUserChantCounts();
+
+    LeaderboardPageResponse getLeaderboard(int limit, Long afterTotal, String afterUserId);
+
+    LeaderboardEntry getUserRank(String userId);
+
+    UserStatsResponse getUserStats(String userId, LocalDate from, LocalDate to);
+
+    void exportUserChantCounts(String format, LocalDate from, LocalDate to, OutputStream out) throws IOException;
 }
@@ -10,4 +10,6 @@ public interface UserService {
     ApiResponse createUser(CreateUserRequest request);
     Optional<User> findUser(String identifier);
     boolean isUserExists(String identifier);
+    Optional<Long> resolveUserId(String identifier);
+    User registerPhoneUser(String phoneNo);
 }
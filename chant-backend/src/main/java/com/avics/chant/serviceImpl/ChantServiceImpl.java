@@ -1,26 +1,67 @@
 package com.avics.chant.serviceImpl;
 
+import com.avics.chant.cache.ChantLeaderboard;
+import com.avics.chant.cache.IdempotencyStore;
+import com.avics.chant.cache.UserDayHistograms;
+import com.avics.chant.cache.UserTotalsIndex;
 import com.avics.chant.dto.*;
 import com.avics.chant.entity.Chant;
-import com.avics.chant.repository.ChantRepository;
+import com.avics.chant.entity.ChantDailyTotal;
+import com.avics.chant.ingest.ChantLog;
+import com.avics.chant.ingest.ChantWriteBehindQueue;
+import com.avics.chant.ingest.ChantWriter;
+import com.avics.chant.ingest.ShardedChantCounter;
+import com.avics.chant.metrics.ChantMetrics;
+import com.avics.chant.repository.ChantDailyTotalRepository;
+import com.avics.chant.repository.ChantExportRepository;
+import com.avics.chant.repository.IdempotencyKeyRepository;
 import com.avics.chant.service.ChantService;
 import com.avics.chant.service.UserService;
+import com.avics.chant.util.DayHistogram;
 import com.avics.chant.util.ValidationUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 
 @Service
 public class ChantServiceImpl implements ChantService {
 
     @Autowired
-    private ChantRepository chantRepository;
+    private ChantDailyTotalRepository dailyTotalRepository;
 
     @Autowired
     private UserService userService;
@@ -28,23 +69,96 @@ public class ChantServiceImpl implements ChantService {
     @Autowired
     private ValidationUtil validationUtil;
 
+    @Autowired
+    private UserTotalsIndex userTotalsIndex;
+
+    @Autowired
+    private ChantLeaderboard leaderboard;
+
+    @Autowired
+    private UserDayHistograms userDayHistograms;
+
+    @Autowired
+    private ChantExportRepository chantExportRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ChantWriter chantWriter;
+
+    @Autowired
+    private ShardedChantCounter shardedChantCounter;
+
+    @Autowired
+    private ChantMetrics chantMetrics;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // only present when chant.ingest.mode=async
+    @Autowired(required = false)
+    private ChantWriteBehindQueue writeBehindQueue;
+
+    // only present when chant.ingest.mode=wal
+    @Autowired(required = false)
+    private ChantLog chantLog;
+
     @Value("${chant.msg.chant.added}")
     private String chantAddedMsg;
 
     @Value("${chant.msg.user.notfound}")
     private String userNotFoundMsg;
 
+    @Value("${chant.msg.chant.busy}")
+    private String chantBusyMsg;
+
+    @Value("${chant.batch.max-entries}")
+    private int batchMaxEntries;
+
+    @Value("${chant.leaderboard.max-page-size}")
+    private int leaderboardMaxPageSize;
+
+    @Value("${chant.stats.default-days}")
+    private int statsDefaultDays;
+
+    @Value("${chant.stats.max-days}")
+    private int statsMaxDays;
+
+    private static final String FUTURE_DATE_MSG = "Cannot add chant count for future dates";
+
     private static final Logger log = LoggerFactory.getLogger(ChantServiceImpl.class);
 
     @Override
+    @Timed("chant.service")
     public ApiResponse addChant(AddChantRequest request) {
+        String key = emptyToNull(request.getIdempotencyKey());
+        if (key == null) {
+            return recordChant(request);
+        }
+        // keys are scoped per user so two clients cannot collide on the same key
+        String scopedKey = validationUtil.normalizeUserId(request.getUserid()) + ":" + key;
+        return idempotencyStore.execute(scopedKey, () -> recordChant(request));
+    }
+
+    private ApiResponse recordChant(AddChantRequest request) {
         try {
             String userId = validationUtil.normalizeUserId(request.getUserid());
             
             // Validate date is not in the future
             LocalDate chantDate = request.getDate();
             if (chantDate != null && chantDate.isAfter(LocalDate.now())) {
-                return new ApiResponse(false, "Cannot add chant count for future dates", null);
+                chantMetrics.validationRejected(ChantMetrics.FUTURE_DATE);
+                return new ApiResponse(false, FUTURE_DATE_MSG, null);
             }
             
             // If no date provided, use current date
@@ -54,25 +168,62 @@ public class ChantServiceImpl implements ChantService {
             
             Optional<com.avics.chant.entity.User> userOpt = userService.findUser(userId);
 
-            if(!userOpt.isPresent()) {
-                if(validationUtil.isPhoneNumber(userId)) {
-                    // auto-register phone-based user
-                    com.avics.chant.entity.User newUser = new com.avics.chant.entity.User();
-                    newUser.setPhoneNo(userId);
-                    newUser.setUsername(userId);
-                    userService.createUser(new CreateUserRequest(userId));
-                } else {
-                    return new ApiResponse(false, userNotFoundMsg, null);
-                }
+            // unknown phone numbers are auto-registered by an upsert, safe against concurrent first adds
+            boolean register = !userOpt.isPresent();
+            if (register && !validationUtil.isPhoneNumber(userId)) {
+                return new ApiResponse(false, userNotFoundMsg, null);
             }
 
             Chant chant = new Chant();
+            chant.setUserId(userOpt.map(com.avics.chant.entity.User::getId).orElse(null));
             chant.setUserIdentifier(userId);
             chant.setChantDate(chantDate);
             chant.setChantCount(request.getCount());
-            chantRepository.save(chant);
+            chant.setIdempotencyKey(emptyToNull(request.getIdempotencyKey()));
 
-            Long total = chantRepository.getUserTotal(userId);
+            Long total;
+            if (writeBehindQueue != null || chantLog != null) {
+                if (register) {
+                    chant.setUserId(userService.registerPhoneUser(userId).getId());
+                    chantMetrics.userAutoRegistered();
+                }
+                // a fast path for plain retries only: writeAll claims the key, so a repeat that gets past this
+                // check is still not counted. The log applier is left to that, a wal add does not wait on the database
+                if (writeBehindQueue != null && chant.getIdempotencyKey() != null && !idempotencyKeyRepository
+                        .findExisting(chant.getUserId(), Collections.singleton(chant.getIdempotencyKey())).isEmpty()) {
+                    return alreadyRecorded(userId, chant.getIdempotencyKey());
+                }
+                // read before handing it over: once queued, it may be applied to the index at any moment
+                long before = currentUserTotal(userId);
+                boolean accepted = writeBehindQueue != null ? writeBehindQueue.submit(chant) : chantLog.append(chant);
+                if (!accepted) {
+                    log.warn("Chant ingestion backlog full, rejecting chant for {}", userId);
+                    return new ApiResponse(false, chantBusyMsg, null);
+                }
+                // not flushed yet, so report what the total will be once it is
+                total = before + request.getCount();
+            } else {
+                try {
+                    // user upsert, chant insert and rollup upsert commit or roll back together
+                    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                        if (register) {
+                            chant.setUserId(userService.registerPhoneUser(userId).getId());
+                        }
+                        chantWriter.write(chant);
+                    });
+                    if (register) {
+                        chantMetrics.userAutoRegistered();
+                    }
+                } catch (DuplicateKeyException e) {
+                    // the key was recorded outside the in-memory window, e.g. after a restart or on another instance
+                    if (chant.getIdempotencyKey() == null) {
+                        throw e;
+                    }
+                    return alreadyRecorded(userId, chant.getIdempotencyKey());
+                }
+                total = currentUserTotal(userId);
+            }
+            chantMetrics.chantAdded();
             log.info("Chant added for {} with count {} on date {}. Total={}", userId, request.getCount(), chantDate, total);
 
             return new ApiResponse(true, chantAddedMsg, new UserTotalResponse(userId, total));
@@ -83,30 +234,273 @@ public class ChantServiceImpl implements ChantService {
         }
     }
 
+    private ApiResponse alreadyRecorded(String userId, String key) {
+        log.info("Chant for {} with idempotency key {} was already recorded", userId, key);
+        chantMetrics.duplicateAdded();
+        return new ApiResponse(true, chantAddedMsg, new UserTotalResponse(userId, currentUserTotal(userId)));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
     @Override
+    @Timed("chant.service")
+    public ApiResponse addChants(AddChantBatchRequest request) {
+        List<AddChantRequest> entries = request.getEntries();
+        if (entries == null || entries.isEmpty()) {
+            chantMetrics.validationRejected(ChantMetrics.BATCH_SIZE);
+            return new ApiResponse(false, "No chant entries to add", null);
+        }
+        if (entries.size() > batchMaxEntries) {
+            chantMetrics.validationRejected(ChantMetrics.BATCH_SIZE);
+            return new ApiResponse(false, "At most " + batchMaxEntries + " chant entries can be added at once", null);
+        }
+        try {
+            BatchEntryResult[] results = new BatchEntryResult[entries.size()];
+            LocalDate today = LocalDate.now();
+
+            // validate every entry first, remembering which user each valid one belongs to
+            Map<String, List<Integer>> entriesByUser = new LinkedHashMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                AddChantRequest entry = entries.get(i);
+                String error = null;
+                if (entry == null) {
+                    error = "Entry is empty";
+                } else {
+                    Set<ConstraintViolation<AddChantRequest>> violations = validator.validate(entry);
+                    if (!violations.isEmpty()) {
+                        error = violations.iterator().next().getMessage();
+                    } else if (entry.getDate() != null && entry.getDate().isAfter(today)) {
+                        error = FUTURE_DATE_MSG;
+                    }
+                }
+                if (error != null) {
+                    chantMetrics.validationRejected(FUTURE_DATE_MSG.equals(error) ? ChantMetrics.FUTURE_DATE : ChantMetrics.INVALID_REQUEST);
+                    results[i] = new BatchEntryResult(i, false, error);
+                } else {
+                    entriesByUser.computeIfAbsent(validationUtil.normalizeUserId(entry.getUserid()), k -> new ArrayList<>()).add(i);
+                }
+            }
+
+            // resolve each user once, auto-registering phone numbers like addChant does
+            List<Chant> chants = new ArrayList<>();
+            List<Integer> chantEntries = new ArrayList<>();
+            for (Map.Entry<String, List<Integer>> byUser : entriesByUser.entrySet()) {
+                String userId = byUser.getKey();
+                Optional<com.avics.chant.entity.User> userOpt = userService.findUser(userId);
+                if (!userOpt.isPresent() && validationUtil.isPhoneNumber(userId)) {
+                    userOpt = Optional.of(userService.registerPhoneUser(userId));
+                    chantMetrics.userAutoRegistered();
+                }
+                for (int i : byUser.getValue()) {
+                    if (!userOpt.isPresent()) {
+                        results[i] = new BatchEntryResult(i, false, userNotFoundMsg);
+                        continue;
+                    }
+                    AddChantRequest entry = entries.get(i);
+                    Chant chant = new Chant();
+                    chant.setUserId(userOpt.get().getId());
+                    chant.setUserIdentifier(userId);
+                    chant.setChantDate(entry.getDate() != null ? entry.getDate() : today);
+                    chant.setChantCount(entry.getCount());
+                    chant.setIdempotencyKey(emptyToNull(entry.getIdempotencyKey()));
+                    chants.add(chant);
+                    chantEntries.add(i);
+                }
+            }
+
+            // one transaction, batched inserts and rollup upserts; chants whose key is already recorded,
+            // here or by a concurrent retry, are acknowledged but not written
+            Set<Chant> written = Collections.newSetFromMap(new IdentityHashMap<>());
+            written.addAll(chantWriter.writeAll(chants));
+            Set<String> acceptedUsers = new LinkedHashSet<>();
+            for (int c = 0; c < chants.size(); c++) {
+                int i = chantEntries.get(c);
+                if (written.contains(chants.get(c))) {
+                    acceptedUsers.add(chants.get(c).getUserIdentifier());
+                } else {
+                    chantMetrics.duplicateAdded();
+                }
+                results[i] = new BatchEntryResult(i, true, chantAddedMsg);
+            }
+            chantMetrics.chantsAdded(written.size());
+
+            List<UserTotalResponse> totals = new ArrayList<>();
+            for (String userId : acceptedUsers) {
+                totals.add(new UserTotalResponse(userId, currentUserTotal(userId)));
+            }
+            log.info("Chant batch added: {} of {} entries accepted for {} users", written.size(), entries.size(), totals.size());
+
+            String message = written.size() + " of " + entries.size() + " chant entries added";
+            return new ApiResponse(!chants.isEmpty(), message, new AddChantBatchResponse(Arrays.asList(results), totals));
+
+        } catch (Exception e) {
+            log.error("Error adding chant batch: {}", e.getMessage(), e);
+            return new ApiResponse(false, "Error while adding chants", null);
+        }
+    }
+
+    @Override
+    @Timed("chant.service")
     public UserTotalResponse getUserTotal(String userId) {
         try {
-            Long total = chantRepository.getUserTotal(validationUtil.normalizeUserId(userId));
-            return new UserTotalResponse(userId, total != null ? total : 0);
+            return new UserTotalResponse(userId, currentUserTotal(validationUtil.normalizeUserId(userId)));
         } catch (Exception e) {
             log.error("Error fetching user total: {}", e.getMessage(), e);
             return new UserTotalResponse(userId, 0L);
         }
     }
 
+    private long currentUserTotal(String userId) {
+        if (userTotalsIndex.isWarm()) {
+            return userTotalsIndex.getTotal(userId);
+        }
+        Long total = readOnly(() -> userService.resolveUserId(userId)
+                .map(dailyTotalRepository::getUserTotal)
+                .orElse(null));
+        return total != null ? total : 0L;
+    }
+
+    // only around database fallbacks: a transaction takes a pooled connection even when nothing is queried
+    private <T> T readOnly(Supplier<T> action) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return tx.execute(status -> action.get());
+    }
+
     @Override
+    @Timed("chant.service")
     public TotalChantsResponse getTotalChants() {
-        try {
-            Long total = chantRepository.getTotalChants();
-            return new TotalChantsResponse(total != null ? total : 0);
-        } catch (Exception e) {
-            log.error("Error fetching total chants: {}", e.getMessage(), e);
-            return new TotalChantsResponse(0L);
+        // failures propagate: a made-up 0 would be cached and broadcast as the real total.
+        // Not read-only, so not from the replica: the body is cached under the primary's version
+        Long total = shardedChantCounter.getTotal();
+        if (total == null) {
+            // shards not initialized yet
+            total = dailyTotalRepository.getTotalChants();
         }
+        return new TotalChantsResponse(total != null ? total : 0);
     }
 
     @Override
+    @Timed("chant.service")
+    @Transactional(readOnly = true)
     public List<UserChantResponse> getAllUserChantCounts() {
-        return chantRepository.getUserChantCounts();
+        return dailyTotalRepository.getUserChantCounts();
+    }
+
+    @Override
+    @Timed("chant.service")
+    public LeaderboardPageResponse getLeaderboard(int limit, Long afterTotal, String afterUserId) {
+        int pageSize = Math.max(1, Math.min(limit, leaderboardMaxPageSize));
+        return leaderboard.page(pageSize, afterTotal, validationUtil.normalizeUserId(afterUserId));
+    }
+
+    @Override
+    @Timed("chant.service")
+    public LeaderboardEntry getUserRank(String userId) {
+        return leaderboard.rankOf(validationUtil.normalizeUserId(userId));
+    }
+
+    @Override
+    @Timed("chant.service")
+    public UserStatsResponse getUserStats(String userId, LocalDate from, LocalDate to) {
+        String normalizedUserId = validationUtil.normalizeUserId(userId);
+        LocalDate today = LocalDate.now();
+        LocalDate end = to != null ? to : today;
+        LocalDate start = from != null && !from.isAfter(end) ? from : end.minusDays(statsDefaultDays - 1);
+        if (ChronoUnit.DAYS.between(start, end) >= statsMaxDays) {
+            start = end.minusDays(statsMaxDays - 1);
+        }
+
+        DayHistogram histogram = userDayHistograms.isWarm()
+                ? userDayHistograms.get(normalizedUserId)
+                : loadHistogram(normalizedUserId);
+        if (histogram == null) {
+            histogram = new DayHistogram();
+        }
+
+        long[] counts = histogram.daily(start, end);
+        List<PeriodCount> daily = new ArrayList<>(counts.length);
+        List<PeriodCount> weekly = new ArrayList<>();
+        List<PeriodCount> monthly = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            LocalDate day = start.plusDays(i);
+            daily.add(new PeriodCount(day, counts[i]));
+            addToPeriod(weekly, day.with(DayOfWeek.MONDAY), counts[i]);
+            addToPeriod(monthly, day.withDayOfMonth(1), counts[i]);
+            total += counts[i];
+        }
+        return new UserStatsResponse(userId, start, end, total,
+                histogram.currentStreak(today), histogram.longestStreak(), daily, weekly, monthly);
+    }
+
+    private static void addToPeriod(List<PeriodCount> periods, LocalDate periodStart, long count) {
+        PeriodCount last = periods.isEmpty() ? null : periods.get(periods.size() - 1);
+        if (last != null && last.getStart().equals(periodStart)) {
+            last.setCount(last.getCount() + count);
+        } else {
+            periods.add(new PeriodCount(periodStart, count));
+        }
+    }
+
+    // used until the in-memory histograms are warm
+    private DayHistogram loadHistogram(String userId) {
+        return readOnly(() -> userService.resolveUserId(userId).map(id -> {
+            DayHistogram histogram = new DayHistogram();
+            for (ChantDailyTotal day : dailyTotalRepository.findByUserIdOrderByChantDate(id)) {
+                histogram.add(day.getChantDate(), day.getChantCount());
+            }
+            return histogram;
+        }).orElse(null));
+    }
+
+    @Override
+    @Timed("chant.service")
+    @Transactional(readOnly = true)
+    public void exportUserChantCounts(String format, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try {
+            if ("csv".equals(format)) {
+                writer.write("userId,totalChants\n");
+                chantExportRepository.streamUserChantCounts(from, to, rs -> {
+                    try {
+                        writer.write(csvField(rs.getString(1)));
+                        writer.write(',');
+                        writer.write(Long.toString(rs.getLong(2)));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } else {
+                JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+                json.setRootValueSeparator(null);
+                chantExportRepository.streamUserChantCounts(from, to, rs -> {
+                    try {
+                        json.writeStartObject();
+                        json.writeStringField("userId", rs.getString(1));
+                        json.writeNumberField("totalChants", rs.getLong(2));
+                        json.writeEndObject();
+                        json.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.flush();
+            }
+        } catch (UncheckedIOException e) {
+            // usually the client went away mid-export
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 }
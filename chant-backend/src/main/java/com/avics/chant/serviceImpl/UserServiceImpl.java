@@ -1,16 +1,23 @@
 package com.avics.chant.serviceImpl;
 
+import com.avics.chant.cache.UserLookupCache;
 import com.avics.chant.dto.ApiResponse;
 import com.avics.chant.dto.CreateUserRequest;
 import com.avics.chant.entity.User;
+import com.avics.chant.repository.UserIdentifierRepository;
 import com.avics.chant.repository.UserRepository;
 import com.avics.chant.service.UserService;
 import com.avics.chant.util.ValidationUtil;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Optional;
 
@@ -23,6 +30,12 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private ValidationUtil validationUtil;
 
+    @Autowired
+    private UserLookupCache userLookupCache;
+
+    @Autowired
+    private UserIdentifierRepository userIdentifierRepository;
+
     @Value("${chant.msg.user.exists}")
     private String userExistsMsg;
 
@@ -32,6 +45,7 @@ public class UserServiceImpl implements UserService {
     private static final Logger log = LoggerFactory.getLogger(UserServiceImpl.class);
 
     @Override
+    @Timed("user.service")
     public ApiResponse createUser(CreateUserRequest request) {
         try {
             String userId = request.getUserid();
@@ -54,10 +68,14 @@ public class UserServiceImpl implements UserService {
                 log.info("New user created with username: {}", upperUserId);
             }
             
-            userRepository.save(user);
+            User saved = userRepository.save(user);
+            userLookupCache.put(validationUtil.normalizeUserId(userId), saved);
 
             return new ApiResponse(true, userCreatedMsg, userId);
 
+        } catch (DataIntegrityViolationException e) {
+            // created concurrently by another request between the check and the save
+            return new ApiResponse(false, userExistsMsg, null);
         } catch (Exception e) {
             log.error("Error creating user: {}", e.getMessage(), e);
             return new ApiResponse(false, "Error while creating user", null);
@@ -65,19 +83,44 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Timed("user.service")
     public Optional<User> findUser(String identifier) {
         try {
-            if(validationUtil.isPhoneNumber(identifier)) {
-                return userRepository.findByPhoneNo(identifier);
-            }
-            return userRepository.findByUsernameIgnoreCase(identifier);
+            // phone numbers are unchanged by normalization, so one key covers both lookups
+            return userLookupCache.get(validationUtil.normalizeUserId(identifier), key ->
+                    validationUtil.isPhoneNumber(key)
+                            ? userRepository.findByPhoneNo(key)
+                            : userRepository.findByUsername(key));
         } catch (Exception e) {
             log.error("Error finding user: {}", e.getMessage(), e);
             return Optional.empty();
         }
     }
 
+    // served from the user lookup cache, so repeated resolution does not hit the database
+    @Override
+    @Timed("user.service")
+    public Optional<Long> resolveUserId(String identifier) {
+        return findUser(identifier).map(User::getId);
+    }
+
+    // joins the caller's transaction, the user is only cached once that commits
+    @Override
+    @Timed("user.service")
+    @Transactional
+    public User registerPhoneUser(String phoneNo) {
+        User user = new User(userIdentifierRepository.upsertPhoneUser(phoneNo), null, phoneNo);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userLookupCache.put(phoneNo, user);
+            }
+        });
+        return user;
+    }
+
     @Override
+    @Timed("user.service")
     public boolean isUserExists(String identifier) {
         try {
             String normalizedIdentifier = validationUtil.normalizeUserId(identifier);
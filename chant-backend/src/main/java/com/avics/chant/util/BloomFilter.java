@@ -0,0 +1,63 @@
+package com.avics.chant.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, thread-safe Bloom filter over strings. mightContain never
+ * returns false for a key that was put, and returns true for an absent key
+ * with roughly the false-positive rate it was sized for.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashes;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int numWords = (int) Math.max(1, (bits + 63) / 64);
+        this.words = new AtomicLongArray(numWords);
+        this.numBits = numWords * 64L;
+        this.numHashes = (int) Math.max(1, Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    public void put(String key) {
+        long hash = hash64(key);
+        long h1 = hash;
+        long h2 = hash >>> 32 | hash << 32;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            long mask = 1L << bit;
+            words.accumulateAndGet((int) (bit >>> 6), mask, (a, b) -> a | b);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        long h1 = hash;
+        long h2 = hash >>> 32 | hash << 32;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a over the chars followed by the murmur3 finalizer to spread the bits
+    private static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
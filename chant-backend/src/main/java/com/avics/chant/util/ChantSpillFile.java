@@ -0,0 +1,103 @@
+package com.avics.chant.util;
+
+import com.avics.chant.entity.Chant;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A batch of acknowledged chants that could not be written to the database,
+ * kept on disk until it can be. Layout: magic, chant count, then per chant
+ * user id, identifier, epoch day, count and optional idempotency key, and a
+ * CRC32 of everything before it.
+ *
+ * Written to a temporary file that is forced to disk and then moved into
+ * place, so a file that exists under its final name is always complete.
+ */
+public final class ChantSpillFile {
+
+    private static final int MAGIC = 0x43485350; // "CHSP"
+
+    private ChantSpillFile() {
+    }
+
+    public static void write(Path path, List<Chant> chants) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(chants.size() * 48 + 12);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(chants.size());
+        for (Chant chant : chants) {
+            out.writeLong(chant.getUserId());
+            out.writeUTF(chant.getUserIdentifier());
+            out.writeLong(chant.getChantDate().toEpochDay());
+            out.writeInt(chant.getChantCount());
+            out.writeBoolean(chant.getIdempotencyKey() != null);
+            if (chant.getIdempotencyKey() != null) {
+                out.writeUTF(chant.getIdempotencyKey());
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static List<Chant> read(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < 12) {
+            throw new IOException("Spill file " + path + " has invalid size " + bytes.length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if (ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt() != (int) crc.getValue()) {
+            throw new IOException("Spill file " + path + " checksum mismatch");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Spill file " + path + " has unknown format");
+        }
+        int count = in.readInt();
+        List<Chant> chants = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Chant chant = new Chant();
+            chant.setUserId(in.readLong());
+            chant.setUserIdentifier(in.readUTF());
+            chant.setChantDate(LocalDate.ofEpochDay(in.readLong()));
+            chant.setChantCount(in.readInt());
+            if (in.readBoolean()) {
+                chant.setIdempotencyKey(in.readUTF());
+            }
+            chants.add(chant);
+        }
+        return chants;
+    }
+}
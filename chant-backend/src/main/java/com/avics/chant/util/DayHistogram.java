@@ -0,0 +1,83 @@
+package com.avics.chant.util;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Chant count per day for one user, kept as parallel sorted arrays of epoch
+ * days and counts. Only days with chants take space (12 bytes each), and
+ * since most adds are for today they append at the end.
+ */
+public class DayHistogram {
+
+    private int[] days = new int[8];
+
+    private long[] counts = new long[8];
+
+    private int size;
+
+    public synchronized void add(LocalDate date, long count) {
+        int day = (int) date.toEpochDay();
+        int i = size > 0 && days[size - 1] < day ? -(size + 1) : Arrays.binarySearch(days, 0, size, day);
+        if (i >= 0) {
+            counts[i] += count;
+            return;
+        }
+        int at = -(i + 1);
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(days, at, days, at + 1, size - at);
+        System.arraycopy(counts, at, counts, at + 1, size - at);
+        days[at] = day;
+        counts[at] = count;
+        size++;
+    }
+
+    /**
+     * One entry per day from from to to inclusive, zero for days without chants.
+     */
+    public synchronized long[] daily(LocalDate from, LocalDate to) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        long[] series = new long[last - first + 1];
+        int i = Arrays.binarySearch(days, 0, size, first);
+        for (i = i >= 0 ? i : -(i + 1); i < size && days[i] <= last; i++) {
+            series[days[i] - first] = counts[i];
+        }
+        return series;
+    }
+
+    /**
+     * Consecutive days with chants ending today, or yesterday when nothing
+     * has been logged today yet.
+     */
+    public synchronized int currentStreak(LocalDate today) {
+        int day = (int) today.toEpochDay();
+        int i = Arrays.binarySearch(days, 0, size, day);
+        i = i >= 0 ? i : -(i + 1) - 1;
+        if (i < 0 || days[i] < day - 1 || counts[i] <= 0) {
+            return 0;
+        }
+        int streak = 1;
+        for (; i > 0 && days[i - 1] == days[i] - 1 && counts[i - 1] > 0; i--) {
+            streak++;
+        }
+        return streak;
+    }
+
+    public synchronized int longestStreak() {
+        int longest = 0;
+        int run = 0;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] <= 0) {
+                run = 0;
+                continue;
+            }
+            run = run > 0 && days[i - 1] == days[i] - 1 ? run + 1 : 1;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,149 @@
+package com.avics.chant.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted set that also knows how many elements come before any key: a treap
+ * with subtree sizes, so add, remove, countBefore and a seek to any position
+ * are O(log n) expected. Not thread-safe, callers lock around it.
+ */
+public class OrderStatisticTree<K> {
+
+    private final Comparator<? super K> order;
+
+    private Node<K> root;
+
+    public OrderStatisticTree(Comparator<? super K> order) {
+        this.order = order;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    // false when an equal key is already present
+    public boolean add(K key) {
+        if (contains(key)) {
+            return false;
+        }
+        Node<K>[] parts = split(root, key, false);
+        root = merge(merge(parts[0], new Node<>(key)), parts[1]);
+        return true;
+    }
+
+    public boolean remove(K key) {
+        Node<K>[] below = split(root, key, false);
+        Node<K>[] equal = split(below[1], key, true);
+        root = merge(below[0], equal[1]);
+        return equal[0] != null;
+    }
+
+    public boolean contains(K key) {
+        Node<K> node = root;
+        while (node != null) {
+            int cmp = order.compare(key, node.key);
+            if (cmp == 0) {
+                return true;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    // number of elements ordered strictly before key, whether or not key is present
+    public int countBefore(K key) {
+        int count = 0;
+        Node<K> node = root;
+        while (node != null) {
+            if (order.compare(key, node.key) <= 0) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    // up to limit elements ordered strictly after key, or from the first one when key is null
+    public List<K> after(K key, int limit) {
+        List<K> out = new ArrayList<>(Math.min(limit, size()));
+        collectAfter(root, key, limit, out);
+        return out;
+    }
+
+    private void collectAfter(Node<K> node, K key, int limit, List<K> out) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        if (key == null || order.compare(node.key, key) > 0) {
+            collectAfter(node.left, key, limit, out);
+            if (out.size() < limit) {
+                out.add(node.key);
+            }
+        }
+        collectAfter(node.right, key, limit, out);
+    }
+
+    // [elements before key, the rest]; with inclusive, elements equal to key go to the first part
+    @SuppressWarnings("unchecked")
+    private Node<K>[] split(Node<K> node, K key, boolean inclusive) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        int cmp = order.compare(node.key, key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node<K>[] parts = split(node.right, key, inclusive);
+            node.right = parts[0];
+            node.update();
+            parts[0] = node;
+            return parts;
+        }
+        Node<K>[] parts = split(node.left, key, inclusive);
+        node.left = parts[1];
+        node.update();
+        parts[1] = node;
+        return parts;
+    }
+
+    // every key in a orders before every key in b
+    private Node<K> merge(Node<K> a, Node<K> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node<K> left;
+        private Node<K> right;
+        private int size = 1;
+
+        private Node(K key) {
+            this.key = key;
+        }
+
+        private void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
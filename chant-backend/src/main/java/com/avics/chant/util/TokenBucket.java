@@ -0,0 +1,43 @@
+package com.avics.chant.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: instead of a token count it keeps
+ * the time at which the bucket will next be full again, and a request is
+ * admitted by moving that time forward one interval with a single CAS.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double perSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // how long until one more request would be admitted
+    public long nanosUntilAvailable() {
+        return Math.max(0, fullAt.get() + intervalNanos - System.nanoTime() - burstNanos);
+    }
+}
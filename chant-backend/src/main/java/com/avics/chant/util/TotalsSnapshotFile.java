@@ -0,0 +1,144 @@
+package com.avics.chant.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of per-user chant totals, read and written through a
+ * memory-mapped file. Layout: magic, format version, high-water mark (last
+ * chants.id included), global total, user count, then per user the UTF-8
+ * identifier (unsigned short length prefix) and its total, and a CRC32 of
+ * everything before it.
+ *
+ * Writes go to a temporary file that is forced to disk and then moved over
+ * the old snapshot, so a crash mid-write leaves the previous one intact.
+ */
+public class TotalsSnapshotFile {
+
+    private static final int MAGIC = 0x43484e54; // "CHNT"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+
+    private final long highWaterMark;
+
+    private final long globalTotal;
+
+    private final Map<String, Long> totals;
+
+    public TotalsSnapshotFile(long highWaterMark, long globalTotal, Map<String, Long> totals) {
+        this.highWaterMark = highWaterMark;
+        this.globalTotal = globalTotal;
+        this.totals = totals;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getGlobalTotal() {
+        return globalTotal;
+    }
+
+    public Map<String, Long> getTotals() {
+        return totals;
+    }
+
+    public void write(Path path) throws IOException {
+        byte[][] ids = new byte[totals.size()][];
+        long[] values = new long[ids.length];
+        long size = HEADER_BYTES + 4;
+        int i = 0;
+        for (Map.Entry<String, Long> entry : totals.entrySet()) {
+            ids[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (ids[i].length > 0xFFFF) {
+                throw new IOException("Identifier too long for snapshot: " + ids[i].length + " bytes");
+            }
+            values[i] = entry.getValue();
+            size += 2 + ids[i].length + 8;
+            i++;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large to map: " + size + " bytes");
+        }
+
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(highWaterMark).putLong(globalTotal).putInt(ids.length);
+                for (i = 0; i < ids.length; i++) {
+                    buffer.putShort((short) ids[i].length).put(ids[i]).putLong(values[i]);
+                }
+                buffer.putInt(checksum(buffer, (int) size - 4));
+                buffer.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Returns null when there is no snapshot at path. A snapshot that is
+     * truncated, of another format version or fails its checksum is an
+     * IOException, so callers can tell it apart from a first start.
+     */
+    public static TotalsSnapshotFile read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot has invalid size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int stored = buffer.getInt((int) size - 4);
+            if (stored != checksum(buffer, (int) size - 4)) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Snapshot has unknown format");
+            }
+            long highWaterMark = buffer.getLong();
+            long globalTotal = buffer.getLong();
+            int count = buffer.getInt();
+            Map<String, Long> totals = new LinkedHashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+            byte[] id = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getShort() & 0xFFFF;
+                if (length > id.length) {
+                    id = new byte[length];
+                }
+                buffer.get(id, 0, length);
+                totals.put(new String(id, 0, length, StandardCharsets.UTF_8), buffer.getLong());
+            }
+            return new TotalsSnapshotFile(highWaterMark, globalTotal, totals);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends from a count that does not fit the file
+            throw new IOException("Snapshot is corrupt: " + e, e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int length) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(0).limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,34 @@
+-- Schema as previously created by hibernate ddl-auto=update. IF NOT EXISTS
+-- lets this run as a no-op against databases that already have it.
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    username VARCHAR(255),
+    phone_no VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_phone_no UNIQUE (phone_no)
+);
+
+CREATE TABLE IF NOT EXISTS chants (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_identifier VARCHAR(255) NOT NULL,
+    chant_date DATE NOT NULL,
+    chant_count INT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS chant_counter_shards (
+    slot INT NOT NULL,
+    total BIGINT NOT NULL,
+    PRIMARY KEY (slot)
+);
+
+CREATE TABLE IF NOT EXISTS chant_daily_totals (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_identifier VARCHAR(255) NOT NULL,
+    chant_date DATE NOT NULL,
+    chant_count BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_daily_user_date UNIQUE (user_identifier, chant_date)
+);
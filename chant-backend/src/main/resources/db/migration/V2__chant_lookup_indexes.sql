@@ -0,0 +1,9 @@
+-- Per-user and date-filtered reads on the raw rows
+CREATE INDEX idx_chants_user_date ON chants (user_identifier, chant_date);
+
+-- Date-range exports over the rollup
+CREATE INDEX idx_daily_totals_date ON chant_daily_totals (chant_date);
+
+-- Usernames are looked up by exact match on the normalized (uppercase) value,
+-- so the unique index on username can be used instead of upper(username)
+UPDATE users SET username = UPPER(username) WHERE username IS NOT NULL;
@@ -0,0 +1,40 @@
+-- Chants reference users by their numeric id instead of repeating the
+-- username / phone number string on every row.
+
+-- Every identifier used in chants needs a users row first. Phone numbers use
+-- the default chant.phone.pattern, same as the auto-registration in addChant.
+INSERT INTO users (phone_no)
+SELECT DISTINCT c.user_identifier FROM chants c
+WHERE c.user_identifier REGEXP '^[0-9]{10}$'
+  AND NOT EXISTS (SELECT 1 FROM users u WHERE u.phone_no = c.user_identifier);
+
+INSERT INTO users (username)
+SELECT DISTINCT c.user_identifier FROM chants c
+WHERE NOT c.user_identifier REGEXP '^[0-9]{10}$'
+  AND NOT EXISTS (SELECT 1 FROM users u WHERE u.username = c.user_identifier);
+
+ALTER TABLE chants ADD COLUMN user_id BIGINT;
+
+UPDATE chants SET user_id = (SELECT u.id FROM users u WHERE u.username = chants.user_identifier);
+UPDATE chants SET user_id = (SELECT u.id FROM users u WHERE u.phone_no = chants.user_identifier)
+WHERE user_id IS NULL;
+
+ALTER TABLE chants MODIFY COLUMN user_id BIGINT NOT NULL;
+DROP INDEX idx_chants_user_date ON chants;
+ALTER TABLE chants DROP COLUMN user_identifier;
+CREATE INDEX idx_chants_user_id_date ON chants (user_id, chant_date);
+
+-- The daily rollup is derived data: recreate it keyed by user_id and let
+-- ChantRollupBackfill refill it from chants on the next start.
+DROP TABLE chant_daily_totals;
+
+CREATE TABLE chant_daily_totals (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    chant_date DATE NOT NULL,
+    chant_count BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_daily_user_date UNIQUE (user_id, chant_date)
+);
+
+CREATE INDEX idx_daily_totals_date ON chant_daily_totals (chant_date);
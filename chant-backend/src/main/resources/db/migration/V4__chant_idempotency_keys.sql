@@ -0,0 +1,11 @@
+-- Client idempotency keys of accepted chants, so a retried add is not
+-- counted twice even after a restart. Rows are purged after
+-- chant.idempotency.retention-hours.
+CREATE TABLE chant_idempotency_keys (
+    user_id BIGINT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL,
+    created_at DATETIME NOT NULL,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_created_at ON chant_idempotency_keys (created_at);
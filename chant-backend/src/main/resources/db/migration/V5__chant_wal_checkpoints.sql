@@ -0,0 +1,8 @@
+-- Last sequence number of each local chant write-ahead log applied to the
+-- database (chant.ingest.mode=wal). Advanced in the same transaction as the
+-- chants it covers, so a replay after a restart never applies one twice.
+CREATE TABLE chant_wal_checkpoints (
+    wal_id VARCHAR(64) NOT NULL,
+    last_seq BIGINT NOT NULL,
+    PRIMARY KEY (wal_id)
+);
@@ -0,0 +1,9 @@
+-- Written on the primary and read back from the read replica to measure
+-- replication lag (chant.datasource.replica.*). Holds a single row.
+CREATE TABLE chant_replication_heartbeat (
+    id INT NOT NULL,
+    beat_millis BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO chant_replication_heartbeat (id, beat_millis) VALUES (1, 0);
@@ -0,0 +1,13 @@
+-- Cold storage for chants older than chant.archive.horizon-days: ChantArchiver
+-- folds raw rows into one total per user and month (month_start is the first
+-- day of the month) and deletes them from chants, which only keeps recent rows.
+CREATE TABLE chants_monthly_archive (
+    user_id BIGINT NOT NULL,
+    month_start DATE NOT NULL,
+    chant_count BIGINT NOT NULL,
+    chant_rows BIGINT NOT NULL,
+    PRIMARY KEY (user_id, month_start)
+);
+
+-- Lets the archiver find rows past the horizon without scanning the table
+CREATE INDEX idx_chants_date ON chants (chant_date);
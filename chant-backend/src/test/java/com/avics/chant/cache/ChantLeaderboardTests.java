@@ -0,0 +1,56 @@
+package com.avics.chant.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.avics.chant.dto.LeaderboardEntry;
+import com.avics.chant.dto.LeaderboardPageResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+// random updates checked page by page against a sort of the same totals
+class ChantLeaderboardTests {
+
+    @Test
+    void pagesAndRanksMatchFullSort() {
+        ChantLeaderboard leaderboard = new ChantLeaderboard();
+        Map<String, Long> totals = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String userId = "U" + random.nextInt(300);
+            long total = random.nextInt(50);
+            totals.put(userId, total);
+            leaderboard.update(userId, () -> total);
+        }
+
+        List<Map.Entry<String, Long>> sorted = totals.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<String, Long> e) -> e.getValue()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .collect(Collectors.toList());
+
+        List<LeaderboardEntry> paged = new ArrayList<>();
+        LeaderboardPageResponse page = leaderboard.page(7, null, null);
+        paged.addAll(page.getEntries());
+        while (page.getNextAfterUserId() != null) {
+            page = leaderboard.page(7, page.getNextAfterTotal(), page.getNextAfterUserId());
+            paged.addAll(page.getEntries());
+        }
+
+        assertThat(paged).hasSize(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            long total = sorted.get(i).getValue();
+            long expectedRank = 1 + totals.values().stream().filter(t -> t > total).count();
+            assertThat(paged.get(i).getUserId()).isEqualTo(sorted.get(i).getKey());
+            assertThat(paged.get(i).getTotalChants()).isEqualTo(total);
+            assertThat(paged.get(i).getRank()).isEqualTo(expectedRank);
+            assertThat(leaderboard.rankOf(sorted.get(i).getKey()).getRank()).isEqualTo(expectedRank);
+        }
+        assertThat(leaderboard.rankOf("NOBODY").getRank()).isNull();
+    }
+}
@@ -0,0 +1,119 @@
+package com.avics.chant.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.avics.chant.dto.ApiResponse;
+import com.avics.chant.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class IdempotencyStoreTests {
+
+    private final IdempotencyKeyRepository repository = mock(IdempotencyKeyRepository.class);
+
+    private IdempotencyStore store(long windowSeconds) {
+        IdempotencyStore store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "idempotencyKeyRepository", repository);
+        ReflectionTestUtils.setField(store, "windowSeconds", windowSeconds);
+        ReflectionTestUtils.setField(store, "maxEntries", 1000L);
+        ReflectionTestUtils.setField(store, "retentionHours", 48L);
+        store.init();
+        return store;
+    }
+
+    @Test
+    void repeatGetsTheOriginalResponseWithoutRunningAgain() {
+        IdempotencyStore store = store(600);
+        AtomicInteger runs = new AtomicInteger();
+        ApiResponse first = store.execute("u:k", () -> new ApiResponse(true, "added " + runs.incrementAndGet(), null));
+        ApiResponse repeat = store.execute("u:k", () -> new ApiResponse(true, "added " + runs.incrementAndGet(), null));
+
+        assertThat(repeat).isSameAs(first);
+        assertThat(runs.get()).isEqualTo(1);
+        // another user's key of the same name is separate
+        store.execute("v:k", () -> new ApiResponse(true, "added " + runs.incrementAndGet(), null));
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentRepeatWaitsForTheFirstCall() throws Exception {
+        IdempotencyStore store = store(600);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<ApiResponse> first = threads.submit(() -> store.execute("u:k", () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(release);
+                return new ApiResponse(true, "added", null);
+            }));
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<ApiResponse> repeat = threads.submit(() -> store.execute("u:k", () -> {
+                runs.incrementAndGet();
+                return new ApiResponse(true, "added again", null);
+            }));
+            Thread.sleep(100);
+            assertThat(repeat.isDone()).isFalse();
+            release.countDown();
+
+            assertThat(repeat.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+            assertThat(runs.get()).isEqualTo(1);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresAreNotRemembered() {
+        IdempotencyStore store = store(600);
+        AtomicInteger runs = new AtomicInteger();
+        store.execute("u:k", () -> new ApiResponse(false, "busy " + runs.incrementAndGet(), null));
+        ApiResponse retry = store.execute("u:k", () -> new ApiResponse(true, "added " + runs.incrementAndGet(), null));
+
+        assertThat(retry.isSuccess()).isTrue();
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void keyRunsAgainOnceTheWindowHasPassed() throws Exception {
+        IdempotencyStore store = store(1);
+        AtomicInteger runs = new AtomicInteger();
+        store.execute("u:k", () -> new ApiResponse(true, "added " + runs.incrementAndGet(), null));
+        Thread.sleep(1200);
+        store.execute("u:k", () -> new ApiResponse(true, "added " + runs.incrementAndGet(), null));
+
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void purgeDeletesKeysPastTheRetention() {
+        IdempotencyStore store = store(600);
+        store.purgeExpiredKeys();
+
+        ArgumentCaptor<Instant> cutoff = ArgumentCaptor.forClass(Instant.class);
+        verify(repository).deleteOlderThan(cutoff.capture());
+        assertThat(Duration.between(cutoff.getValue(), Instant.now()).toHours()).isEqualTo(48);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
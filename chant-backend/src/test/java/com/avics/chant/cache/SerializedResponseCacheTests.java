@@ -0,0 +1,98 @@
+package com.avics.chant.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.avics.chant.dto.TotalChantsResponse;
+import com.avics.chant.entity.Chant;
+import com.avics.chant.ingest.ChantsWrittenEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+@SpringBootTest(properties = {"chant.response-cache.ttl-ms=60000", "chant.response-cache.gzip-min-bytes=0"})
+@ActiveProfiles("test")
+class SerializedResponseCacheTests {
+
+    @Autowired
+    private SerializedResponseCache cache;
+
+    @Autowired
+    private TotalsVersions totalsVersions;
+
+    private void write() {
+        Chant chant = new Chant(null, 1L, "CACHETEST", null, LocalDate.now(), 1);
+        totalsVersions.onChantsWritten(new ChantsWrittenEvent(Collections.singletonList(chant)));
+    }
+
+    @Test
+    void concurrentMissesRebuildOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SerializedResponseCache.Entry>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get("singleFlight", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new TotalChantsResponse(42L);
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<SerializedResponseCache.Entry> result : results) {
+                assertThat(new String(result.get(5, TimeUnit.SECONDS).getJson(), StandardCharsets.UTF_8))
+                        .isEqualTo("{\"totalChants\":42}");
+            }
+            assertThat(loads.get()).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeMakesEntryStale() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("stale", () -> new TotalChantsResponse((long) loads.incrementAndGet()));
+        assertThat(cache.get("stale", () -> new TotalChantsResponse((long) loads.incrementAndGet())).getJson())
+                .isEqualTo("{\"totalChants\":1}".getBytes(StandardCharsets.UTF_8));
+
+        write();
+        assertThat(cache.getIfFresh("stale")).isNull();
+        SerializedResponseCache.Entry rebuilt = cache.get("stale", () -> new TotalChantsResponse((long) loads.incrementAndGet()));
+        assertThat(rebuilt.getJson()).isEqualTo("{\"totalChants\":2}".getBytes(StandardCharsets.UTF_8));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(rebuilt.getGzip()))) {
+            assertThat(new String(toBytes(gzip), StandardCharsets.UTF_8)).isEqualTo("{\"totalChants\":2}");
+        }
+    }
+
+    private static byte[] toBytes(GZIPInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,52 @@
+package com.avics.chant.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.avics.chant.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class UserLookupCacheTests {
+
+    private static UserLookupCache cache(long negativeTtlSeconds) {
+        UserLookupCache cache = new UserLookupCache();
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(cache, "negativeTtlSeconds", negativeTtlSeconds);
+        cache.init();
+        return cache;
+    }
+
+    @Test
+    void missesAreNotCachedByDefault() {
+        UserLookupCache cache = cache(0);
+        AtomicInteger loads = new AtomicInteger();
+        User created = new User();
+
+        assertThat(cache.get("alice", id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        })).isEmpty();
+        // created meanwhile on another instance
+        assertThat(cache.get("alice", id -> {
+            loads.incrementAndGet();
+            return Optional.of(created);
+        })).containsSame(created);
+        assertThat(cache.get("alice", id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        })).containsSame(created);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void missesAreCachedWhenEnabled() {
+        UserLookupCache cache = cache(30);
+        cache.get("bob", id -> Optional.empty());
+
+        assertThat(cache.get("bob", id -> Optional.of(new User()))).isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+package com.avics.chant.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.avics.chant.dto.UserChantResponse;
+import com.avics.chant.repository.ChantDailyTotalRepository;
+import com.avics.chant.repository.ChantExportRepository;
+import com.avics.chant.repository.ChantRepository;
+import com.avics.chant.util.TotalsSnapshotFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// warm-up from a snapshot file on a temp directory, with the repositories mocked
+class UserTotalsIndexTests {
+
+    @TempDir
+    Path dir;
+
+    private final ChantRepository chantRepository = mock(ChantRepository.class);
+
+    private final ChantExportRepository chantExportRepository = mock(ChantExportRepository.class);
+
+    private final ChantDailyTotalRepository dailyTotalRepository = mock(ChantDailyTotalRepository.class);
+
+    private UserTotalsIndex warmUp(Path snapshot) {
+        UserTotalsIndex index = new UserTotalsIndex();
+        ReflectionTestUtils.setField(index, "chantRepository", chantRepository);
+        ReflectionTestUtils.setField(index, "chantExportRepository", chantExportRepository);
+        ReflectionTestUtils.setField(index, "dailyTotalRepository", dailyTotalRepository);
+        ReflectionTestUtils.setField(index, "leaderboard", mock(ChantLeaderboard.class));
+        ReflectionTestUtils.setField(index, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(index, "snapshotPath", snapshot.toString());
+        index.warmUp();
+        return index;
+    }
+
+    private Path snapshot(long highWaterMark, long globalTotal) throws IOException {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        totals.put("alice", 5L);
+        totals.put("bob", 3L);
+        Path path = dir.resolve("totals.snapshot");
+        new TotalsSnapshotFile(highWaterMark, globalTotal, totals).write(path);
+        return path;
+    }
+
+    @Test
+    void replaysChantsAboveTheHighWaterMark() throws Exception {
+        Path path = snapshot(10, 8);
+        when(chantRepository.getMaxId()).thenReturn(12L);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(row("alice", 2));
+            handler.processRow(row("carol", 4));
+            return null;
+        }).when(chantExportRepository).streamUserTotalsBetweenIds(eq(10L), eq(12L), any());
+
+        UserTotalsIndex index = warmUp(path);
+
+        assertThat(index.isWarm()).isTrue();
+        assertThat(index.getTotal("alice")).isEqualTo(7);
+        assertThat(index.getTotal("bob")).isEqualTo(3);
+        assertThat(index.getTotal("carol")).isEqualTo(4);
+        assertThat(index.getSnapshotHighWaterMark()).isEqualTo(10);
+        verify(dailyTotalRepository, never()).getUserChantCounts();
+    }
+
+    @Test
+    void snapshotAheadOfTheDatabaseFallsBackToTheRollup() throws Exception {
+        Path path = snapshot(10, 8);
+        // chants removed since, e.g. the database was restored from a backup
+        when(chantRepository.getMaxId()).thenReturn(9L);
+        when(dailyTotalRepository.getUserChantCounts())
+                .thenReturn(Collections.singletonList(new UserChantResponse("alice", 1L)));
+
+        UserTotalsIndex index = warmUp(path);
+
+        assertThat(index.getTotal("alice")).isEqualTo(1);
+        assertThat(index.getTotal("bob")).isZero();
+        assertThat(index.getSnapshotHighWaterMark()).isZero();
+        verify(chantExportRepository, never()).streamUserTotalsBetweenIds(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void unreadableSnapshotFallsBackToTheRollup() throws Exception {
+        Path path = snapshot(10, 8);
+        Files.write(path, new byte[]{1, 2, 3});
+        when(dailyTotalRepository.getUserChantCounts())
+                .thenReturn(Collections.singletonList(new UserChantResponse("bob", 9L)));
+
+        UserTotalsIndex index = warmUp(path);
+
+        assertThat(index.isWarm()).isTrue();
+        assertThat(index.getTotal("bob")).isEqualTo(9);
+    }
+
+    private static ResultSet row(String userId, long total) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(userId);
+        when(rs.getLong(2)).thenReturn(total);
+        return rs;
+    }
+}
@@ -0,0 +1,49 @@
+package com.avics.chant.concurrent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class BoundedDbExecutorTests {
+
+    @Test
+    void startedWriteOutlivesTimeoutAndQueuedOneIsShed() throws Exception {
+        BoundedDbExecutor writes = new BoundedDbExecutor("test-write", 1, 5, 100, false, "busy",
+                new SimpleMeterRegistry());
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        try {
+            DeferredResult<ResponseEntity<String>> running = writes.submit(() -> {
+                sleep(400);
+                return ResponseEntity.ok("written");
+            });
+            DeferredResult<ResponseEntity<String>> queued = writes.submit(() -> {
+                queuedRan.set(true);
+                return ResponseEntity.ok("written");
+            });
+
+            Thread.sleep(250);
+            assertThat(running.hasResult()).isFalse();
+            assertThat(((ResponseEntity<?>) queued.getResult()).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+            Thread.sleep(400);
+            assertThat(((ResponseEntity<?>) running.getResult()).getBody()).isEqualTo("written");
+            assertThat(queuedRan.get()).isFalse();
+        } finally {
+            writes.shutdown();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
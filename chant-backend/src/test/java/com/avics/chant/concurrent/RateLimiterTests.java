@@ -0,0 +1,52 @@
+package com.avics.chant.concurrent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.avics.chant.metrics.ChantMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RateLimiterTests {
+
+    private final ChantMetrics chantMetrics = mock(ChantMetrics.class);
+
+    private RateLimiter limiter(MockEnvironment environment) {
+        RateLimiter limiter = new RateLimiter();
+        ReflectionTestUtils.setField(limiter, "environment", environment);
+        ReflectionTestUtils.setField(limiter, "chantMetrics", chantMetrics);
+        ReflectionTestUtils.setField(limiter, "idleSeconds", 600L);
+        ReflectionTestUtils.setField(limiter, "maxBuckets", 1000L);
+        limiter.init();
+        return limiter;
+    }
+
+    @Test
+    void retryAfterIsRoundedUpToWholeSeconds() {
+        RateLimiter limiter = limiter(new MockEnvironment()
+                .withProperty("chant.rate-limit.create-user.ip.per-second", "0.4")
+                .withProperty("chant.rate-limit.create-user.ip.burst", "2"));
+
+        assertThat(limiter.acquire(RateLimiter.CREATE_USER_IP, "10.0.0.1")).isZero();
+        assertThat(limiter.acquire(RateLimiter.CREATE_USER_IP, "10.0.0.1")).isZero();
+        // next token in 2.5 s
+        assertThat(limiter.acquire(RateLimiter.CREATE_USER_IP, "10.0.0.1")).isEqualTo(3);
+        verify(chantMetrics).rateLimited(RateLimiter.CREATE_USER_IP);
+        // each client has its own bucket
+        assertThat(limiter.acquire(RateLimiter.CREATE_USER_IP, "10.0.0.2")).isZero();
+    }
+
+    @Test
+    void limitsWithoutARateAlwaysAdmit() {
+        RateLimiter limiter = limiter(new MockEnvironment()
+                .withProperty("chant.rate-limit.add.ip.per-second", "0")
+                .withProperty("chant.rate-limit.add.ip.burst", "1"));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.acquire(RateLimiter.ADD_IP, "10.0.0.1")).isZero();
+            assertThat(limiter.acquire(RateLimiter.ADD_USER, "9876543210")).isZero();
+        }
+    }
+}
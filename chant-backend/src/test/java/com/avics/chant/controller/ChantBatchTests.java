@@ -0,0 +1,64 @@
+package com.avics.chant.controller;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChantBatchTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void badEntriesFailOnlyThemselves() throws Exception {
+        String body = "{\"entries\": ["
+                + "{\"userid\": \"9000000101\", \"count\": 5},"
+                + "{\"userid\": \"9000000101\"},"
+                + "{\"userid\": \"9000000101\", \"count\": 2, \"date\": \"" + LocalDate.now().plusDays(1) + "\"},"
+                + "{\"userid\": \"nobody-batch-user\", \"count\": 1},"
+                + "{\"userid\": \"9000000102\", \"count\": 4, \"idempotencyKey\": \"k1\"},"
+                + "{\"userid\": \"9000000102\", \"count\": 4, \"idempotencyKey\": \"k1\"},"
+                + "{\"userid\": \"9000000101\", \"count\": 0}"
+                + "]}";
+        MvcResult started = mockMvc.perform(post("/api/chants/addBatch")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // runs on the write executor
+        started.getAsyncResult(5000);
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("2 of 7 chant entries added"))
+                .andExpect(jsonPath("$.data.results[0].success").value(true))
+                .andExpect(jsonPath("$.data.results[1].success").value(false))
+                .andExpect(jsonPath("$.data.results[1].message").value("Count is required"))
+                .andExpect(jsonPath("$.data.results[2].success").value(false))
+                .andExpect(jsonPath("$.data.results[3].message").value("User does not exist. Please create UserID first"))
+                .andExpect(jsonPath("$.data.results[4].success").value(true))
+                // the repeated key is acknowledged but not counted again
+                .andExpect(jsonPath("$.data.results[5].success").value(true))
+                .andExpect(jsonPath("$.data.results[6].message").value("Count must be at least 1"))
+                .andExpect(jsonPath("$.data.totals", hasSize(2)))
+                .andExpect(jsonPath("$.data.totals[?(@.userid == '9000000101')].totalCount").value(5))
+                .andExpect(jsonPath("$.data.totals[?(@.userid == '9000000102')].totalCount").value(4));
+    }
+}
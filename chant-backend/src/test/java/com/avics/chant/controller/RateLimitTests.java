@@ -0,0 +1,67 @@
+package com.avics.chant.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = {
+        "chant.rate-limit.create-user.ip.per-second=0.1",
+        "chant.rate-limit.create-user.ip.burst=1",
+        "chant.rate-limit.add.user.per-second=0.2",
+        "chant.rate-limit.add.user.burst=1"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RateLimitTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void clientOverItsLimitGets429WithRetryAfter() throws Exception {
+        mockMvc.perform(post("/api/users/create").with(r -> ip(r, "10.0.0.7"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"userid\": \"9000000301\"}"))
+                .andExpect(request().asyncStarted());
+
+        mockMvc.perform(post("/api/users/create").with(r -> ip(r, "10.0.0.7"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"userid\": \"9000000302\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Too many requests. Please slow down and try again shortly"));
+
+        // another client is not held up
+        mockMvc.perform(post("/api/users/create").with(r -> ip(r, "10.0.0.8"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"userid\": \"9000000303\"}"))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void userOverItsLimitGets429() throws Exception {
+        String body = "{\"userid\": \"9000000304\", \"count\": 1}";
+        mockMvc.perform(post("/api/chants/add").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(request().asyncStarted());
+
+        mockMvc.perform(post("/api/chants/add").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"));
+    }
+
+    // the interceptor matches on the servlet path, which MockMvc leaves empty unlike a DispatcherServlet on "/"
+    private static MockHttpServletRequest ip(MockHttpServletRequest request, String address) {
+        request.setServletPath(request.getRequestURI());
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
@@ -0,0 +1,83 @@
+package com.avics.chant.controller;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.ingest.ChantWriter;
+import com.avics.chant.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserStatsTests {
+
+    private static final String USER = "9000000401";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChantWriter chantWriter;
+
+    @Autowired
+    private UserService userService;
+
+    private static Chant chant(long userId, String date, int count) {
+        Chant chant = new Chant();
+        chant.setUserId(userId);
+        chant.setUserIdentifier(USER);
+        chant.setChantDate(LocalDate.parse(date));
+        chant.setChantCount(count);
+        return chant;
+    }
+
+    @Test
+    void weeksStartOnMondayAndPartialPeriodsOnlyCountTheRange() throws Exception {
+        long userId = userService.registerPhoneUser(USER).getId();
+        List<Chant> chants = new ArrayList<>();
+        // 2026-01-26 and 2026-02-02 are Mondays; the 27th and 4th fall outside the range
+        chants.add(chant(userId, "2026-01-27", 100));
+        chants.add(chant(userId, "2026-01-28", 1));
+        chants.add(chant(userId, "2026-01-31", 2));
+        chants.add(chant(userId, "2026-02-01", 4));
+        chants.add(chant(userId, "2026-02-02", 8));
+        chants.add(chant(userId, "2026-02-04", 100));
+        chantWriter.writeAll(chants);
+
+        MvcResult started = mockMvc.perform(get("/api/chants/user/" + USER + "/stats")
+                        .param("from", "2026-01-28").param("to", "2026-02-03"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(5000);
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalChants").value(15))
+                .andExpect(jsonPath("$.daily", hasSize(7)))
+                .andExpect(jsonPath("$.daily[*].count", contains(1, 0, 0, 2, 4, 8, 0)))
+                .andExpect(jsonPath("$.weekly[*].start", contains("2026-01-26", "2026-02-02")))
+                .andExpect(jsonPath("$.weekly[*].count", contains(7, 8)))
+                .andExpect(jsonPath("$.monthly[*].start", contains("2026-01-01", "2026-02-01")))
+                .andExpect(jsonPath("$.monthly[*].count", contains(3, 12)))
+                // streaks look at every day, not just the range
+                .andExpect(jsonPath("$.longestStreak").value(3))
+                .andExpect(jsonPath("$.currentStreak").value(0));
+    }
+}
@@ -0,0 +1,108 @@
+package com.avics.chant.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.avics.chant.service.ChantService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// two in-memory H2 databases stand in for the primary and the replica; replication is simulated by hand
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "chant.datasource.replica.enabled=true",
+        "chant.datasource.replica.url=" + ReplicaRoutingTests.REPLICA_URL,
+        "chant.datasource.replica.username=sa",
+        "chant.datasource.replica.password=",
+        "chant.datasource.replica.driver-class-name=org.h2.Driver",
+        "chant.datasource.replica.max-lag-ms=5000",
+        "chant.datasource.replica.lag-check-interval-ms=3600000"})
+@ActiveProfiles("test")
+class ReplicaRoutingTests {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final long REPLICA_TOTAL = 1000L;
+
+    private static JdbcTemplate replica;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    private ChantService chantService;
+
+    @BeforeAll
+    static void createReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+        replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        // a total only the replica has, so reads show where they went
+        replica.update("INSERT INTO chant_counter_shards (slot, total) VALUES (0, ?)", REPLICA_TOTAL);
+    }
+
+    @BeforeEach
+    void replicaCaughtUp() {
+        replicate(System.currentTimeMillis());
+    }
+
+    private void replicate(long beatMillis) {
+        replica.update("UPDATE chant_replication_heartbeat SET beat_millis = ? WHERE id = 1", beatMillis);
+        lagMonitor.check();
+    }
+
+    private long shardTotal(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> jdbcTemplate.queryForObject("SELECT SUM(total) FROM chant_counter_shards", Long.class));
+    }
+
+    @Test
+    void readOnlyTransactionsUseCaughtUpReplica() {
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+        assertThat(shardTotal(true)).isEqualTo(REPLICA_TOTAL);
+    }
+
+    // the /total body is cached under the primary's version, so it must not come from a replica behind it
+    @Test
+    void globalTotalIsReadFromPrimary() {
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+        assertThat(chantService.getTotalChants().getTotalChants()).isEqualTo(shardTotal(false));
+    }
+
+    @Test
+    void writeTransactionsStayOnPrimary() {
+        assertThat(shardTotal(false)).isNotEqualTo(REPLICA_TOTAL);
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        replicate(System.currentTimeMillis() - 60000);
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(shardTotal(true)).isEqualTo(shardTotal(false));
+        assertThat(chantService.getTotalChants().getTotalChants()).isEqualTo(shardTotal(false));
+    }
+
+    @Test
+    void verdictGoesStaleWhenChecksStop() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(dataSource, dataSource, 5000, 50);
+        monitor.check();
+        assertThat(monitor.isReplicaUsable()).isTrue();
+        Thread.sleep(150);
+        assertThat(monitor.isReplicaUsable()).isFalse();
+    }
+}
@@ -0,0 +1,59 @@
+package com.avics.chant.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.avics.chant.repository.ChantRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+@SpringBootTest(properties = {"chant.archive.horizon-days=30", "chant.archive.batch-size=2"})
+@ActiveProfiles("test")
+class ChantArchiverTests {
+
+    private static final long USER_ID = 900001L;
+
+    @Autowired
+    private ChantArchiver archiver;
+
+    @Autowired
+    private ChantRepository chantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private void insertChant(LocalDate date, int count) {
+        jdbcTemplate.update("INSERT INTO chants (user_id, chant_date, chant_count) VALUES (?, ?, ?)",
+                USER_ID, Date.valueOf(date), count);
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class, USER_ID);
+    }
+
+    @Test
+    void oldChantsAreFoldedIntoMonthlyTotals() {
+        LocalDate january = LocalDate.of(2024, 1, 1);
+        insertChant(january.plusDays(3), 10);
+        insertChant(january.plusDays(20), 20);
+        insertChant(january.plusMonths(1), 5);
+        insertChant(LocalDate.now(), 7);
+        // the newest row is never archived, even when it is past the horizon
+        insertChant(january, 1);
+        long totalBefore = chantRepository.getTotalChants();
+
+        archiver.archive();
+
+        assertThat(count("SELECT COUNT(*) FROM chants WHERE user_id = ?")).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT chant_count FROM chants_monthly_archive "
+                + "WHERE user_id = ? AND month_start = DATE '2024-01-01'", Long.class, USER_ID)).isEqualTo(30);
+        assertThat(count("SELECT SUM(chant_rows) FROM chants_monthly_archive WHERE user_id = ?")).isEqualTo(3);
+        assertThat(count("SELECT SUM(chant_count) FROM chants_monthly_archive WHERE user_id = ?")).isEqualTo(35);
+        assertThat(chantRepository.getTotalChants()).isEqualTo(totalBefore);
+    }
+}
@@ -0,0 +1,220 @@
+package com.avics.chant.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.repository.ChantWalCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// the log on a temp directory; checkpoints live in a map instead of chant_wal_checkpoints
+class ChantLogTests {
+
+    // every record here is 46 bytes (8 header, 38 body), so a segment holds 4 of them
+    private static final long SEGMENT_BYTES = 200;
+
+    private static final int RECORD_BYTES = 46;
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+
+    private ChantLog open() throws IOException {
+        ChantWalCheckpointRepository checkpointRepository = mock(ChantWalCheckpointRepository.class);
+        when(checkpointRepository.getLastSeq(anyString()))
+                .thenAnswer(invocation -> checkpoints.getOrDefault(invocation.<String>getArgument(0), 0L));
+        doAnswer(invocation -> checkpoints.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(checkpointRepository).save(anyString(), anyLong());
+        ChantLog log = new ChantLog();
+        ReflectionTestUtils.setField(log, "checkpointRepository", checkpointRepository);
+        ReflectionTestUtils.setField(log, "dir", dir.toString());
+        ReflectionTestUtils.setField(log, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(log, "syncTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(log, "queueCapacity", 100);
+        ReflectionTestUtils.setField(log, "batchSize", 10);
+        ReflectionTestUtils.setField(log, "offerTimeoutMs", 1000L);
+        log.start();
+        return log;
+    }
+
+    private static Chant chant(int count) {
+        Chant chant = new Chant();
+        chant.setUserId(7L);
+        chant.setUserIdentifier("9876543210");
+        chant.setChantDate(LocalDate.of(2026, 1, 1));
+        chant.setChantCount(count);
+        return chant;
+    }
+
+    private static void append(ChantLog log, int from, int to) {
+        for (int count = from; count <= to; count++) {
+            assertThat(log.append(chant(count))).isTrue();
+        }
+    }
+
+    // reads and acknowledges everything on disk, returning the chant counts in log order
+    private static List<Integer> drain(ChantLog log, int batch) throws IOException {
+        List<Integer> counts = new ArrayList<>();
+        for (ChantLog.Batch b = log.peek(batch); !b.getChants().isEmpty(); b = log.peek(batch)) {
+            b.getChants().forEach(c -> counts.add(c.getChantCount()));
+            log.acknowledge();
+        }
+        return counts;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> counts = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            counts.add(i);
+        }
+        return counts;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".wal")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void rotatesSegmentsAndDropsTornTailOnReopen() throws Exception {
+        ChantLog log = open();
+        append(log, 1, 10);
+        log.stop();
+        List<Path> segments = segments();
+        assertThat(segments).hasSize(3);
+
+        // a crash in the middle of writing the last record
+        Path last = segments.get(2);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        log = open();
+        assertThat(Files.size(last)).isEqualTo(RECORD_BYTES);
+        assertThat(drain(log, 3)).isEqualTo(range(1, 9));
+        append(log, 11, 11);
+        assertThat(drain(log, 3)).containsExactly(11);
+        log.stop();
+    }
+
+    @Test
+    void checksumMismatchEndsTheLog() throws Exception {
+        ChantLog log = open();
+        append(log, 1, 7);
+        log.stop();
+
+        // flip a byte in the body of the second record of the last segment (chant 6)
+        Path last = segments().get(1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long at = RECORD_BYTES + 8 + 20;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, at);
+            b.put(0, (byte) (b.get(0) ^ 0xFF));
+            b.rewind();
+            channel.write(b, at);
+        }
+
+        log = open();
+        assertThat(Files.size(last)).isEqualTo(RECORD_BYTES);
+        assertThat(drain(log, 10)).isEqualTo(range(1, 5));
+        log.stop();
+    }
+
+    @Test
+    void replaysFromCheckpointAcrossSegmentBoundary() throws Exception {
+        ChantLog log = open();
+        append(log, 1, 10);
+        // apply 1..4 with their checkpoint, then read 5..7 and crash before their checkpoint commits
+        assertThat(log.peek(3).getChants()).extracting(Chant::getChantCount).containsExactly(1, 2, 3);
+        log.acknowledge();
+        ChantLog.Batch applied = log.peek(3);
+        assertThat(applied.getChants()).extracting(Chant::getChantCount).containsExactly(4);
+        log.acknowledge();
+        checkpoints.put(log.getWalId(), applied.getLastSeq());
+        assertThat(log.peek(3).getChants()).extracting(Chant::getChantCount).containsExactly(5, 6, 7);
+        log.stop();
+
+        log = open();
+        assertThat(log.getAppliedSeqAtStart()).isEqualTo(4);
+        assertThat(drain(log, 4)).isEqualTo(range(5, 10));
+        log.stop();
+        // the segment holding 1..4 was fully read and deleted
+        assertThat(segments().get(0).getFileName().toString()).isNotEqualTo(String.format("%020d.wal", 1));
+    }
+
+    @Test
+    void applierWritesEachLoggedChantOnceAcrossRestart() throws Exception {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        ChantLog log = open();
+        append(log, 1, 10);
+        ChantLogApplier applier = applier(log, written);
+        awaitCheckpoint(log, 10);
+        applier.stop();
+        append(log, 11, 12);
+        log.stop();
+
+        log = open();
+        applier = applier(log, written);
+        awaitCheckpoint(log, 12);
+        applier.stop();
+        log.stop();
+
+        assertThat(written).isEqualTo(range(1, 12));
+    }
+
+    private ChantLogApplier applier(ChantLog log, List<Integer> written) {
+        ChantWriter writer = mock(ChantWriter.class);
+        doAnswer(invocation -> {
+            List<Chant> chants = invocation.getArgument(0);
+            chants.forEach(c -> written.add(c.getChantCount()));
+            return null;
+        }).when(writer).writeAll(anyList());
+        ChantWalCheckpointRepository checkpointRepository = mock(ChantWalCheckpointRepository.class);
+        doAnswer(invocation -> checkpoints.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(checkpointRepository).save(anyString(), anyLong());
+        ChantLogApplier applier = new ChantLogApplier();
+        ReflectionTestUtils.setField(applier, "chantLog", log);
+        ReflectionTestUtils.setField(applier, "chantWriter", writer);
+        ReflectionTestUtils.setField(applier, "checkpointRepository", checkpointRepository);
+        ReflectionTestUtils.setField(applier, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(applier, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(applier, "batchSize", 3);
+        ReflectionTestUtils.setField(applier, "flushIntervalMs", 20L);
+        applier.start();
+        return applier;
+    }
+
+    private void awaitCheckpoint(ChantLog log, long seq) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (checkpoints.getOrDefault(log.getWalId(), 0L) < seq && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(checkpoints.get(log.getWalId())).isEqualTo(seq);
+    }
+}
@@ -0,0 +1,162 @@
+package com.avics.chant.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.avics.chant.entity.Chant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// the queue on its own, with a stub writer standing in for the database
+class ChantWriteBehindQueueTests {
+
+    @TempDir
+    Path spillDir;
+
+    private final List<Chant> written = Collections.synchronizedList(new ArrayList<>());
+
+    private ChantWriteBehindQueue queue(ChantWriter writer) {
+        ChantWriteBehindQueue queue = new ChantWriteBehindQueue();
+        ReflectionTestUtils.setField(queue, "chantWriter", writer);
+        ReflectionTestUtils.setField(queue, "queueCapacity", 100);
+        ReflectionTestUtils.setField(queue, "batchSize", 3);
+        ReflectionTestUtils.setField(queue, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(queue, "offerTimeoutMs", 50L);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 2);
+        ReflectionTestUtils.setField(queue, "spillDir", spillDir.toString());
+        ReflectionTestUtils.setField(queue, "shutdownTimeoutMs", 10000L);
+        queue.start();
+        return queue;
+    }
+
+    private static Chant chant(Integer count) {
+        Chant chant = new Chant();
+        chant.setUserId(1L);
+        chant.setUserIdentifier("9876543210");
+        chant.setChantDate(LocalDate.of(2026, 1, 1));
+        chant.setChantCount(count);
+        return chant;
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void stopWhileFlushingWritesEveryQueuedChant() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        ChantWriter writer = mock(ChantWriter.class);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            interrupted.compareAndSet(false, Thread.currentThread().isInterrupted());
+            written.addAll(invocation.getArgument(0));
+            return null;
+        }).when(writer).writeAll(anyList());
+        ChantWriteBehindQueue queue = queue(writer);
+
+        for (int i = 1; i <= 3; i++) {
+            assertThat(queue.submit(chant(i))).isTrue();
+        }
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 4; i <= 5; i++) {
+            assertThat(queue.submit(chant(i))).isTrue();
+        }
+
+        Thread stopper = new Thread(() -> {
+            try {
+                queue.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopper.start();
+        Thread.sleep(100);
+        assertThat(queue.submit(chant(6))).isFalse();
+        release.countDown();
+        stopper.join(10000);
+
+        assertThat(stopper.isAlive()).isFalse();
+        assertThat(interrupted.get()).isFalse();
+        assertThat(written).extracting(Chant::getChantCount).containsExactly(1, 2, 3, 4, 5);
+        assertThat(spillFiles()).isZero();
+    }
+
+    @Test
+    void failingBatchesAreSpilledAndWrittenAfterRestart() throws Exception {
+        ChantWriter failing = mock(ChantWriter.class);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("database down");
+        }).when(failing).writeAll(anyList());
+        ChantWriteBehindQueue down = queue(failing);
+        for (int i = 1; i <= 4; i++) {
+            assertThat(down.submit(chant(i))).isTrue();
+        }
+        down.stop();
+        assertThat(spillFiles()).isPositive();
+
+        ChantWriter working = mock(ChantWriter.class);
+        doAnswer(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        }).when(working).writeAll(anyList());
+        ChantWriteBehindQueue up = queue(working);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        up.stop();
+
+        assertThat(written).extracting(Chant::getChantCount).containsExactlyInAnyOrder(1, 2, 3, 4);
+        assertThat(spillFiles()).isZero();
+    }
+
+    @Test
+    void chantThatCannotBeStoredDoesNotStopTheFlusher() throws Exception {
+        ChantWriter writer = mock(ChantWriter.class);
+        doAnswer(invocation -> {
+            List<Chant> chants = invocation.getArgument(0);
+            for (Chant chant : chants) {
+                // what a JDBC insert does with a missing count
+                if (chant.getChantCount() == null) {
+                    throw new NullPointerException("chant_count");
+                }
+            }
+            written.addAll(chants);
+            return chants;
+        }).when(writer).writeAll(anyList());
+        ChantWriteBehindQueue queue = queue(writer);
+
+        assertThat(queue.submit(chant(1))).isTrue();
+        assertThat(queue.submit(chant(null))).isTrue();
+        assertThat(queue.submit(chant(3))).isTrue();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(queue.submit(chant(4))).isTrue();
+        queue.stop();
+
+        assertThat(written).extracting(Chant::getChantCount).containsExactly(1, 3, 4);
+        assertThat(spillFiles()).isZero();
+    }
+}
@@ -0,0 +1,102 @@
+package com.avics.chant.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.avics.chant.entity.Chant;
+import com.avics.chant.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// the unique key on chant_idempotency_keys decides which of several writes with one key is counted
+@SpringBootTest
+@ActiveProfiles("test")
+class ChantWriterIdempotencyTests {
+
+    @Autowired
+    private ChantWriter chantWriter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Chant chant(long userId, String key) {
+        Chant chant = new Chant();
+        chant.setUserId(userId);
+        chant.setUserIdentifier("9000000201");
+        chant.setChantDate(LocalDate.now());
+        chant.setChantCount(3);
+        chant.setIdempotencyKey(key);
+        return chant;
+    }
+
+    private long chantRows(long userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chants WHERE user_id = ?", Long.class, userId);
+    }
+
+    @Test
+    void repeatedKeysAreWrittenOnce() {
+        long userId = userService.registerPhoneUser("9000000201").getId();
+        Chant first = chant(userId, "a");
+        Chant sameBatch = chant(userId, "a");
+        Chant unkeyed = chant(userId, null);
+
+        assertThat(chantWriter.writeAll(Arrays.asList(first, sameBatch, unkeyed))).containsExactly(first, unkeyed);
+        assertThat(chantWriter.writeAll(Collections.singletonList(chant(userId, "a")))).isEmpty();
+        assertThat(chantRows(userId)).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentWritesWithOneKeyCountOnce() throws Exception {
+        long userId = userService.registerPhoneUser("9000000202").getId();
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            // the first write holds its transaction open after claiming the key
+            Future<List<Chant>> first = threads.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                List<Chant> written = chantWriter.writeAll(Collections.singletonList(chant(userId, "b")));
+                claimed.countDown();
+                await(commit);
+                return written;
+            }));
+            assertThat(claimed.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<List<Chant>> second = threads.submit(() -> chantWriter.writeAll(Collections.singletonList(chant(userId, "b"))));
+            Thread.sleep(200);
+            commit.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS)).hasSize(1);
+            assertThat(second.get(10, TimeUnit.SECONDS)).isEmpty();
+            assertThat(chantRows(userId)).isEqualTo(1);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.avics.chant.load;
+
+import com.avics.chant.ChantApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load driver, run with the loadtest profile rather than as a test:
+ *
+ *   mvn -Ploadtest verify -DskipTests -Dload.rate=500 -Dload.duration-seconds=120
+ *
+ * Boots the whole application (Tomcat, security, Jackson, JPA) on the test
+ * profile's in-memory H2 database and drives it over HTTP with an open
+ * model: requests arrive as a Poisson process at load.rate per second
+ * whether or not earlier ones have finished. Latency is measured from each
+ * request's scheduled arrival, so time spent waiting behind a slow server
+ * is counted instead of hidden. Arrivals beyond load.max-in-flight are
+ * dropped and reported.
+ *
+ * load.mix weights the calls, e.g. add:55,total:25,exists:10,create:5,usersCounts:5.
+ * Simulated users are load.users phone numbers, created by their first add.
+ */
+public class ChantLoadDriver {
+
+    private static final long FIRST_PHONE = 8000000000L;
+
+    private final String baseUrl;
+
+    private final int users;
+
+    private final AtomicInteger createdUsers = new AtomicInteger();
+
+    private final List<Call> calls = new ArrayList<>();
+
+    private int totalWeight;
+
+    private ChantLoadDriver(String baseUrl, int users, String mix) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            Call call = new Call(nameAndWeight[0], Integer.parseInt(nameAndWeight[1]));
+            calls.add(call);
+            totalWeight += call.weight;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "200"));
+        int warmupSeconds = Integer.getInteger("load.warmup-seconds", 10);
+        int durationSeconds = Integer.getInteger("load.duration-seconds", 60);
+        int users = Integer.getInteger("load.users", 5000);
+        int concurrency = Integer.getInteger("load.concurrency", 200);
+        int maxInFlight = Integer.getInteger("load.max-in-flight", 10000);
+        String mix = System.getProperty("load.mix", "add:55,total:25,exists:10,create:5,usersCounts:5");
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(ChantApplication.class)
+                .logStartupInfo(false)
+                .run("--spring.profiles.active=test",
+                        "--server.port=0",
+                        // every simulated client shares one IP, measure the app rather than the limiter
+                        "--chant.rate-limit.add.ip.per-second=0",
+                        "--chant.rate-limit.add.user.per-second=0",
+                        "--chant.rate-limit.create-user.ip.per-second=0",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.level.com.avics.chant=WARN");
+        try {
+            String baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            ChantLoadDriver driver = new ChantLoadDriver(baseUrl, users, mix);
+            System.out.printf("Driving %s at %.0f req/s: %ds warm-up, %ds measured, %d users, mix %s%n",
+                    baseUrl, rate, warmupSeconds, durationSeconds, users, mix);
+            driver.run(rate, warmupSeconds, durationSeconds, concurrency, maxInFlight);
+        } finally {
+            app.close();
+        }
+    }
+
+    private void run(double rate, int warmupSeconds, int durationSeconds, int concurrency, int maxInFlight)
+            throws InterruptedException {
+        ExecutorService workers = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        AtomicLong inFlight = new AtomicLong();
+        LongAdder dropped = new LongAdder();
+        long offered = 0;
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long next = start;
+        while (true) {
+            next += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (next >= end) {
+                break;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Call call = pick(random.nextInt(totalWeight));
+            boolean measured = next >= measureFrom;
+            if (measured) {
+                offered++;
+            }
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    dropped.increment();
+                }
+                continue;
+            }
+            long scheduled = next;
+            inFlight.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    boolean ok = perform(call);
+                    if (measured) {
+                        call.record(System.nanoTime() - scheduled, ok);
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        report(offered, dropped.sum(), durationSeconds);
+    }
+
+    private Call pick(int ticket) {
+        for (Call call : calls) {
+            ticket -= call.weight;
+            if (ticket < 0) {
+                return call;
+            }
+        }
+        return calls.get(calls.size() - 1);
+    }
+
+    private boolean perform(Call call) {
+        String phone = Long.toString(FIRST_PHONE + ThreadLocalRandom.current().nextInt(users));
+        try {
+            switch (call.name) {
+                case "add":
+                    return send("POST", "/api/chants/add",
+                            "{\"userid\":\"" + phone + "\",\"count\":" + (1 + ThreadLocalRandom.current().nextInt(108)) + "}");
+                case "total":
+                    return send("GET", "/api/chants/total", null);
+                case "userTotal":
+                    return send("GET", "/api/chants/user/" + phone + "/total", null);
+                case "exists":
+                    return send("GET", "/api/users/exists/" + phone, null);
+                case "create":
+                    return send("POST", "/api/users/create",
+                            "{\"userid\":\"LOADUSER" + createdUsers.incrementAndGet() + "\"}");
+                case "usersCounts":
+                    return send("GET", "/api/chants/usersCounts", null);
+                default:
+                    throw new IllegalArgumentException("Unknown call in load.mix: " + call.name);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean send(String method, String path, String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(30000);
+        if (json != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        // read the body to the end so the connection goes back to the keep-alive pool
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+        return status < 400;
+    }
+
+    private void report(long offered, long dropped, int durationSeconds) {
+        System.out.printf("%nOffered %d requests (%.1f/s), dropped %d%n", offered, (double) offered / durationSeconds, dropped);
+        System.out.printf("%-12s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Call call : calls) {
+            Histogram h = call.latency;
+            System.out.printf("%-12s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    call.name, h.getTotalCount(), call.errors.sum(), (double) h.getTotalCount() / durationSeconds,
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)), ms(h.getValueAtPercentile(99)),
+                    ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+        }
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class Call {
+
+        final String name;
+
+        final int weight;
+
+        // microseconds, errors included
+        final ConcurrentHistogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(5), 3);
+
+        final LongAdder errors = new LongAdder();
+
+        Call(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        void record(long nanos, boolean ok) {
+            latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), latency.getHighestTrackableValue()));
+            if (!ok) {
+                errors.increment();
+            }
+        }
+    }
+}
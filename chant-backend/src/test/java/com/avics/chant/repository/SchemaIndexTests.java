@@ -0,0 +1,48 @@
+package com.avics.chant.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+// runs the migrations on H2 and checks the hot lookups are planned on the new indexes
+@SpringBootTest
+@ActiveProfiles("test")
+class SchemaIndexTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String plan(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class).toLowerCase();
+    }
+
+    @Test
+    void userTotalByDateUsesUserDateIndex() {
+        assertThat(plan("SELECT SUM(chant_count) FROM chants "
+                + "WHERE user_id = 42 AND chant_date >= DATE '2026-01-01'"))
+                .contains("idx_chants_user_id_date");
+    }
+
+    @Test
+    void rollupUserTotalUsesUniqueUserDateIndex() {
+        assertThat(plan("SELECT SUM(chant_count) FROM chant_daily_totals WHERE user_id = 42"))
+                .contains("uk_daily_user_date");
+    }
+
+    @Test
+    void rollupDateRangeUsesDateIndex() {
+        assertThat(plan("SELECT user_id, SUM(chant_count) FROM chant_daily_totals "
+                + "WHERE chant_date >= DATE '2026-01-01' GROUP BY user_id"))
+                .contains("idx_daily_totals_date");
+    }
+
+    @Test
+    void usernameLookupUsesUniqueIndex() {
+        assertThat(plan("SELECT id FROM users WHERE username = 'RAMAKRISHNA'"))
+                .contains("uk_users_username");
+    }
+}
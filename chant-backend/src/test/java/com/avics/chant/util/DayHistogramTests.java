@@ -0,0 +1,64 @@
+package com.avics.chant.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+class DayHistogramTests {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private static DayHistogram histogram(int... daysAgo) {
+        DayHistogram histogram = new DayHistogram();
+        for (int d : daysAgo) {
+            histogram.add(TODAY.minusDays(d), 1);
+        }
+        return histogram;
+    }
+
+    @Test
+    void addsOutOfOrderAndMergesRepeatedDays() {
+        DayHistogram histogram = histogram(0, 5, 2, 9, 2, 20, 11, 3, 4, 6, 7);
+
+        assertThat(histogram.daily(TODAY.minusDays(7), TODAY)).containsExactly(1, 1, 1, 1, 1, 2, 0, 1);
+    }
+
+    @Test
+    void dailyWindowIsZeroFilledAndBoundedAtBothEnds() {
+        DayHistogram histogram = histogram(0, 3, 10);
+
+        assertThat(histogram.daily(TODAY.minusDays(4), TODAY.minusDays(1))).containsExactly(0, 1, 0, 0);
+        assertThat(histogram.daily(TODAY.minusDays(9), TODAY.minusDays(4))).containsOnly(0);
+        assertThat(histogram.daily(TODAY.plusDays(1), TODAY.plusDays(1))).containsExactly(0);
+        assertThat(new DayHistogram().daily(TODAY, TODAY)).containsExactly(0);
+    }
+
+    @Test
+    void currentStreakEndsTodayOrYesterday() {
+        assertThat(histogram(0, 1, 2, 4).currentStreak(TODAY)).isEqualTo(3);
+        // nothing logged today yet, the streak is still alive
+        assertThat(histogram(1, 2, 4).currentStreak(TODAY)).isEqualTo(2);
+        assertThat(histogram(2, 3, 4).currentStreak(TODAY)).isZero();
+        assertThat(new DayHistogram().currentStreak(TODAY)).isZero();
+        // a chant dated after today does not start a streak
+        assertThat(histogram(-1).currentStreak(TODAY)).isZero();
+    }
+
+    @Test
+    void longestStreakAcrossGaps() {
+        assertThat(histogram(0, 1, 5, 6, 7, 8, 12).longestStreak()).isEqualTo(4);
+        assertThat(histogram(3).longestStreak()).isEqualTo(1);
+        assertThat(new DayHistogram().longestStreak()).isZero();
+    }
+
+    @Test
+    void daysWithoutChantsBreakStreaks() {
+        DayHistogram histogram = histogram(0, 1, 2, 3);
+        histogram.add(TODAY.minusDays(1), -1);
+
+        assertThat(histogram.currentStreak(TODAY)).isEqualTo(1);
+        assertThat(histogram.longestStreak()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,79 @@
+package com.avics.chant.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class TokenBucketTests {
+
+    private static int drain(TokenBucket bucket) {
+        int admitted = 0;
+        while (bucket.tryAcquire()) {
+            admitted++;
+        }
+        return admitted;
+    }
+
+    @Test
+    void admitsABurstThenRefuses() {
+        TokenBucket bucket = new TokenBucket(1, 5);
+
+        assertThat(drain(bucket)).isEqualTo(5);
+        assertThat(bucket.tryAcquire()).isFalse();
+        // the next token is about a second away
+        assertThat(bucket.nanosUntilAvailable())
+                .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(900))
+                .isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void fullBucketHasNothingToWaitFor() {
+        assertThat(new TokenBucket(1, 5).nanosUntilAvailable()).isZero();
+    }
+
+    @Test
+    void refillsAtTheSustainedRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        drain(bucket);
+
+        Thread.sleep(250);
+        // two tokens back after 250 ms at 10 per second, never more than the burst
+        assertThat(drain(bucket)).isBetween(2, 3);
+        Thread.sleep(1000);
+        assertThat(drain(bucket)).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentCallersShareOneBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(0.001, 100);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> admitted = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                admitted.add(threads.submit(() -> {
+                    int n = 0;
+                    for (int i = 0; i < 100; i++) {
+                        if (bucket.tryAcquire()) {
+                            n++;
+                        }
+                    }
+                    return n;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> f : admitted) {
+                total += f.get(5, TimeUnit.SECONDS);
+            }
+            assertThat(total).isEqualTo(100);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.avics.chant.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+class TotalsSnapshotFileTests {
+
+    @TempDir
+    Path dir;
+
+    private Path written() throws IOException {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        totals.put("9876543210", 108L);
+        totals.put("radhe", 5000000000L);
+        totals.put("राधे", 1L);
+        Path path = dir.resolve("totals.snapshot");
+        new TotalsSnapshotFile(42, 5000000109L, totals).write(path);
+        return path;
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path path = written();
+        TotalsSnapshotFile snapshot = TotalsSnapshotFile.read(path);
+
+        assertThat(snapshot.getHighWaterMark()).isEqualTo(42);
+        assertThat(snapshot.getGlobalTotal()).isEqualTo(5000000109L);
+        assertThat(snapshot.getTotals()).containsExactly(
+                entry("9876543210", 108L), entry("radhe", 5000000000L), entry("राधे", 1L));
+        // the temporary file was moved over, not left behind
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(path);
+        }
+    }
+
+    @Test
+    void missingSnapshotIsNotAnError() throws IOException {
+        assertThat(TotalsSnapshotFile.read(dir.resolve("none.snapshot"))).isNull();
+    }
+
+    @Test
+    void rejectsTruncatedSnapshot() throws IOException {
+        Path path = written();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        assertThatThrownBy(() -> TotalsSnapshotFile.read(path)).isInstanceOf(IOException.class);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(10);
+        }
+        assertThatThrownBy(() -> TotalsSnapshotFile.read(path)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsCorruptSnapshot() throws IOException {
+        Path path = written();
+        // one flipped bit in the first user's total
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long at = 28 + 2 + 10 + 7;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, at);
+            b.put(0, (byte) (b.get(0) ^ 0x01));
+            b.rewind();
+            channel.write(b, at);
+        }
+
+        assertThatThrownBy(() -> TotalsSnapshotFile.read(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+}
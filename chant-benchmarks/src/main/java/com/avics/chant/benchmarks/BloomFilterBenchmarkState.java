@@ -0,0 +1,15 @@
+package com.avics.chant.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link ChantBenchmarkState} with chant.user-cache.bloom.enabled turned on.
+ */
+@State(Scope.Benchmark)
+public class BloomFilterBenchmarkState extends ChantBenchmarkState {
+
+    public BloomFilterBenchmarkState() {
+        bloomFilter = true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.avics.chant.benchmarks;
+
+import com.avics.chant.ChantApplication;
+import com.avics.chant.service.ChantService;
+import com.avics.chant.service.UserService;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Boots the application against a fresh in-memory H2 database (MySQL mode)
+ * that is migrated and seeded before the context starts, so the startup
+ * backfill, shard seeding and cache warm-up all run on the seeded data.
+ */
+@State(Scope.Benchmark)
+public class ChantBenchmarkState {
+
+    // raw chants rows, spread over rows / CHANTS_PER_USER users
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    static final int CHANTS_PER_USER = 10;
+
+    private static final long FIRST_PHONE = 9000000000L;
+
+    private static final int SEED_BATCH = 10000;
+
+    private ConfigurableApplicationContext context;
+
+    ChantService chantService;
+
+    UserService userService;
+
+    int users;
+
+    // chant.user-cache.bloom.enabled, off like the application default
+    boolean bloomFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = Math.max(1, rows / CHANTS_PER_USER);
+        String url = "jdbc:h2:mem:chant-bench-" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        seed(new JdbcTemplate(dataSource));
+
+        context = new SpringApplicationBuilder(ChantApplication.class)
+                .logStartupInfo(false)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--chant.snapshot.enabled=false",
+                        "--chant.user-cache.bloom.enabled=" + bloomFilter,
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.level.com.avics.chant=WARN");
+        chantService = context.getBean(ChantService.class);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // each user gets CHANTS_PER_USER rows on consecutive days ending today
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < users; i++) {
+            batch.add(new Object[]{i + 1L, phone(i)});
+            if (batch.size() == SEED_BATCH || i == users - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (id, phone_no) VALUES (?, ?)", batch);
+                batch.clear();
+            }
+        }
+        LocalDate today = LocalDate.now();
+        for (int r = 0; r < rows; r++) {
+            batch.add(new Object[]{r % users + 1L, Date.valueOf(today.minusDays(r / users)), 1 + r % 108});
+            if (batch.size() == SEED_BATCH || r == rows - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO chants (user_id, chant_date, chant_count) VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    String phone(int user) {
+        return Long.toString(FIRST_PHONE + user);
+    }
+
+    String randomPhone() {
+        return phone(ThreadLocalRandom.current().nextInt(users));
+    }
+
+    // well-formed but never seeded, for the miss path
+    String randomUnknownPhone() {
+        return phone(users + ThreadLocalRandom.current().nextInt(users));
+    }
+}
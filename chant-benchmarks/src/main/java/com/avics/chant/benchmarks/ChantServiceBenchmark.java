@@ -0,0 +1,50 @@
+package com.avics.chant.benchmarks;
+
+import com.avics.chant.dto.AddChantRequest;
+import com.avics.chant.dto.ApiResponse;
+import com.avics.chant.dto.TotalChantsResponse;
+import com.avics.chant.dto.UserChantResponse;
+import com.avics.chant.dto.UserTotalResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput plus sampled latency percentiles; run with -prof gc (the
+ * module default) for the allocation rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ChantServiceBenchmark {
+
+    @Benchmark
+    public ApiResponse addChant(ChantBenchmarkState state) {
+        return state.chantService.addChant(new AddChantRequest(state.randomPhone(), LocalDate.now(), 1, null));
+    }
+
+    @Benchmark
+    public UserTotalResponse getUserTotal(ChantBenchmarkState state) {
+        return state.chantService.getUserTotal(state.randomPhone());
+    }
+
+    @Benchmark
+    public TotalChantsResponse getTotalChants(ChantBenchmarkState state) {
+        return state.chantService.getTotalChants();
+    }
+
+    @Benchmark
+    public List<UserChantResponse> getAllUserChantCounts(ChantBenchmarkState state) {
+        return state.chantService.getAllUserChantCounts();
+    }
+}
@@ -0,0 +1,38 @@
+package com.avics.chant.benchmarks;
+
+import com.avics.chant.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserServiceBenchmark {
+
+    @Benchmark
+    public Optional<User> findUser(ChantBenchmarkState state) {
+        return state.userService.findUser(state.randomPhone());
+    }
+
+    // misses are not cached, so each one reads the database
+    @Benchmark
+    public Optional<User> findUnknownUser(ChantBenchmarkState state) {
+        return state.userService.findUser(state.randomUnknownPhone());
+    }
+
+    // mostly answered by the bloom filter
+    @Benchmark
+    public Optional<User> findUnknownUserWithBloomFilter(BloomFilterBenchmarkState state) {
+        return state.userService.findUser(state.randomUnknownPhone());
+    }
+}
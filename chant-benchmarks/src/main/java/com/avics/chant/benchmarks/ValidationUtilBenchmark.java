@@ -0,0 +1,59 @@
+package com.avics.chant.benchmarks;
+
+import com.avics.chant.util.ValidationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs on every request, no database or context needed. The fields are set
+ * to the values in application.properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationUtilBenchmark {
+
+    @Param({"9876543210", "ramakrishna"})
+    public String input;
+
+    private ValidationUtil validationUtil;
+
+    @Setup
+    public void setUp() {
+        validationUtil = new ValidationUtil();
+        set("phonePattern", "^[0-9]{10}$");
+        set("minUserLength", 8);
+    }
+
+    private void set(String name, Object value) {
+        Field field = ReflectionUtils.findField(ValidationUtil.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, validationUtil, value);
+    }
+
+    @Benchmark
+    public boolean isPhoneNumber() {
+        return validationUtil.isPhoneNumber(input);
+    }
+
+    @Benchmark
+    public String normalizeUserId() {
+        return validationUtil.normalizeUserId(input);
+    }
+}
@@ -200,7 +200,8 @@ export class AddChantComponent implements OnInit {
     const request = {
       userid: userId,
       date: date,
-      count: parseInt(count, 10)
+      count: parseInt(count, 10),
+      idempotencyKey: this.apiService.newIdempotencyKey()
     };
 
     // For new username users, create user first
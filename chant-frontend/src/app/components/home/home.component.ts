@@ -121,7 +121,8 @@ export class HomeComponent implements OnInit {
     const request = {
       userid: userId,
       date: date,
-      count: parseInt(count, 10)
+      count: parseInt(count, 10),
+      idempotencyKey: this.apiService.newIdempotencyKey()
     };
 
     // First, try to add the chant
@@ -16,6 +16,7 @@ export interface AddChantRequest {
   userid: string;
   date: string;
   count: number;
+  idempotencyKey?: string;
 }
 
 export interface UserTotalResponse {
@@ -48,6 +49,14 @@ export class ApiService {
     return userId.toUpperCase();
   }
 
+  // Sent with every attempt of the same chant so retries are not counted twice
+  newIdempotencyKey(): string {
+    if (typeof crypto !== 'undefined' && typeof crypto.randomUUID === 'function') {
+      return crypto.randomUUID();
+    }
+    return Date.now().toString(36) + '-' + Math.random().toString(36).substring(2, 12);
+  }
+
   createUser(request: CreateUserRequest): Observable<ApiResponse> {
     const normalizedRequest = {
       ...request,